@@ -1,15 +1,26 @@
 package addressbook;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
-import java.io.FileWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.FileNotFoundException;
@@ -38,10 +49,54 @@ import java.io.FileNotFoundException;
  */
 
 public class AddressBook {
-  private List<Contact> contactsList;
+  private final List<Contact> contactsList;
+  /* Holds the same contacts as contactsList for constant time membership checks */
+  private final Set<Contact> contactsSet;
+  /* Search indexes; null until built by the first search */
+  private TrigramIndex trigramIndex;
+  private PhoneNumberIndex phoneNumberIndex;
+  /* BK-tree of the names; null until built by the first fuzzy search */
+  private FuzzyNameIndex fuzzyNameIndex;
+  /* Sorted maps by email and postal address fields; null unless enabled */
+  private SecondaryIndexes secondaryIndexes;
+  /* Runs large searches in parallel; null for sequential search */
+  private ExecutorService searchExecutor;
+  /* Writes background saves; null until the first one */
+  private volatile BackgroundSaver backgroundSaver;
+  /* Changes since the snapshot at journalSnapshotPath; null when journaling is off */
+  private ContactsJournal journal;
+  private String journalSnapshotPath;
+  /* The most recent changes by version, and the observers told of each change */
+  private final ContactChangeFeed changeFeed;
+  private final List<AddressBookObserver> observers;
+  /* The contacts at the latest version for other threads; null until first requested */
+  private volatile ImmutableContactsList contactsSnapshot;
+
+  /**
+   * The smallest number of contacts a search must check before it is split across
+   * threads, when parallel search is enabled.
+   */
+  public static final int PARALLEL_SEARCH_THRESHOLD = 50000;
+
+  /**
+   * The smallest number of changes a journal holds before it is compacted into its
+   * snapshot, when journaling is enabled.
+   */
+  public static final int JOURNAL_COMPACTION_THRESHOLD = 1024;
+
+  /**
+   * The number of most recent changes held for {@code getChangesSince}.
+   */
+  public static final int CHANGE_FEED_CAPACITY = 4096;
+
+  /* Inserting one contact into the snapshot costs about this many times copying one */
+  private static final int SNAPSHOT_REBUILD_RATIO = 32;
   
   public AddressBook() { 
     this.contactsList = new ArrayList<Contact>();
+    this.contactsSet = new HashSet<Contact>();
+    this.changeFeed = new ContactChangeFeed(CHANGE_FEED_CAPACITY);
+    this.observers = new ArrayList<AddressBookObserver>();
   }
   
   /**
@@ -49,26 +104,115 @@ public class AddressBook {
    * If the Contact is null the method will return false. 
    * If the Contact already exists in the Address Book the method will return false.
    * When the Contact is successfully added he/she/it will be inserted in the Address Book's
-   * {@code ArrayList} in sorted order by the Contact's name.  
+   * {@code ArrayList} in sorted order by the Contact's name.
+   * <p>
+   * Duplicates are detected with a hash set of the contacts in the Address Book and the
+   * insertion point is located by a binary search over the sorted list, so the list
+   * never needs to be scanned or re-sorted.
    * <p>
    * {@code addContact} is not thread-safe.
    * @param contact the {@code Contact} object to be added to the Address Book.
    * @return true if the contact is successfully added; false otherwise.
    * @throws NullPointerException if {@code Contact} is null.
+   * @throws IllegalStateException if journaling is enabled and the change cannot be
+   * journaled, in which case the Address Book is left unchanged.
    */
-	
-  public boolean addContact(Contact contact) { 
+
+  public boolean addContact(Contact contact) {
     /*Contact is immutable. Don't need to use Defensive Copy */
     if (contact == null) {
       throw new NullPointerException("contact cannot be null");
     }
-    if (contactsList.contains(contact)) {	
-      return false;	
-    } else {
-      contactsList.add(contact);
-      Collections.sort(contactsList);
-      return true;
+    if (contactsSet.contains(contact)) {
+      return false;
     }
+    journalAdded(Collections.singletonList(contact));
+    /* compareTo returns 0 exactly when equals is true, so the search always misses */
+    int index = -(Collections.binarySearch(contactsList, contact) + 1);
+    contactsList.add(index, contact);
+    contactsSet.add(contact);
+    index(contact);
+    contactAdded(index, contact);
+    compactJournalIfFull();
+    return true;
+  }
+
+  /**
+   * Takes a collection of {@code Contact} objects to be added to the Address Book in a
+   * single pass. The new contacts are sorted once and merged with the existing, already
+   * sorted, list of contacts, dropping duplicates along the way.
+   * <p>
+   * A contact is rejected if it already exists in the Address Book or if an equal contact
+   * appears earlier in the provided collection. Rejected contacts are returned in 
+   * sorted order.
+   * <p>
+   * Prefer {@code addContacts} over calling {@code addContact} in a loop when adding
+   * many contacts at once.
+   * <p>
+   * {@code addContacts} is not thread-safe.
+   * @param contacts the {@code Contact} objects to be added to the Address Book.
+   * @return a list of the contacts that were rejected as duplicates; empty if all
+   * contacts were added.
+   * @throws NullPointerException if contacts is null or contains a null element.
+   * @throws IllegalStateException if journaling is enabled and the change cannot be
+   * journaled, in which case the Address Book is left unchanged.
+   */
+
+  public List<Contact> addContacts(Collection<Contact> contacts) {
+    if (contacts == null) {
+      throw new NullPointerException("contacts cannot be null");
+    }
+    Contact[] newContacts = contacts.toArray(new Contact[contacts.size()]);
+    for (Contact contact: newContacts) {
+      if (contact == null) {
+        throw new NullPointerException("contact cannot be null");
+      }
+    }
+    /* Stable sort keeps the first of several equal contacts ahead of the rest */
+    Arrays.sort(newContacts);
+
+    List<Contact> rejected = new ArrayList<Contact>();
+    int accepted = 0;
+    for (Contact contact: newContacts) {
+      /* Equal contacts are adjacent once sorted */
+      if (contactsSet.contains(contact)
+          || (accepted > 0 && newContacts[accepted - 1].equals(contact))) {
+        rejected.add(contact);
+      } else {
+        newContacts[accepted++] = contact;
+      }
+    }
+    journalAdded(Arrays.asList(newContacts).subList(0, accepted));
+    for (int k = 0; k < accepted; k++) {
+      contactsSet.add(newContacts[k]);
+      index(newContacts[k]);
+    }
+    /*
+     * Merge in place from the tail, so views returned by getUnmodifiableContactsList
+     * stay attached to the list. The list is grown first and each slot is written once.
+     */
+    int[] mergedIndexes = new int[accepted];
+    int i = contactsList.size() - 1;
+    int j = accepted - 1;
+    contactsList.addAll(Collections.<Contact>nCopies(accepted, null));
+    for (int k = contactsList.size() - 1; j >= 0; k--) {
+      if (i >= 0 && contactsList.get(i).compareTo(newContacts[j]) > 0) {
+        contactsList.set(k, contactsList.get(i--));
+      } else {
+        mergedIndexes[j] = k;
+        contactsList.set(k, newContacts[j--]);
+      }
+    }
+    long firstVersion = changeFeed.getVersion() + 1;
+    for (int k = 0; k < accepted; k++) {
+      changeFeed.record(newContacts[k], true);
+    }
+    updateContactsSnapshot(newContacts, mergedIndexes, accepted);
+    for (int k = 0; k < accepted; k++) {
+      notifyObserversAdded(newContacts[k], firstVersion + k);
+    }
+    compactJournalIfFull();
+    return rejected;
   }
   
   /**
@@ -85,53 +229,542 @@ public class AddressBook {
    * <p>
    * Spaces between two words must be provided where applicable. Searching 'EricS'
    * will not return 'Eric Schmitterer'.  
+   * <p>
+   * Search strings of three or more characters are answered from a trigram index of
+   * the contacts' property fields and a digit index of their phone numbers; shorter
+   * search strings scan every contact.
+   * Either way the matching contacts are returned in the Address Book's sorted order.
    * @param searchString the string or substring of characters to be searched for 
    * within each contact's set of property fields.
    * @return a list of contacts who match the search
    */
   
   public List<Contact> searchContactsList(String searchString) {
-	if (searchString.isEmpty() || searchString == null) {
-      return Collections.emptyList();	
+    if (searchString == null || searchString.isEmpty()) {
+      return Collections.emptyList();
     }
-	List<Contact> matchingContacts = new ArrayList<Contact>();
     String lowerCaseSearchString = searchString.toLowerCase();
-    char firstChar = searchString.charAt(0);
-    String number;
-    if (Character.isDigit(firstChar) || firstChar == '+' || firstChar == '(') {
-      number = Contact.parseStringToNumberString(searchString);    	
-    } else {
-      number = "";	
+    String number = searchNumber(searchString);
+    if (!TrigramIndex.canSearch(lowerCaseSearchString)) {
+      return filterMatches(contactsList, lowerCaseSearchString, number);
     }
-    for (Contact contact: contactsList) {
-      //if searchString is contained within property string insert contact into 
-      //matchingContacts	
+    List<Contact> matchingContacts = filterMatches(
+        searchCandidates(lowerCaseSearchString, number), lowerCaseSearchString, number);
+    Collections.sort(matchingContacts);
+    return matchingContacts;
+  }
+
+  /**
+   * Turns on parallel search. Searches that need to check at least
+   * {@code PARALLEL_SEARCH_THRESHOLD} contacts, either by scanning the Address Book for
+   * a short search string or by checking the candidates from the search indexes, split
+   * the contacts into chunks and check them on the provided executor. The results are
+   * the same as for a sequential search and are returned in the same order.
+   * <p>
+   * Searches that check fewer contacts stay sequential, since the cost of handing work
+   * to other threads would outweigh the gain. Parallel search is off by default.
+   * <p>
+   * The executor is not shut down by the Address Book.
+   * {@code enableParallelSearch} is not thread-safe.
+   * @param executor the executor to run search chunks on.
+   * @throws NullPointerException if executor is null.
+   * @see disableParallelSearch
+   */
+
+  public void enableParallelSearch(ExecutorService executor) {
+    if (executor == null) {
+      throw new NullPointerException("executor cannot be null");
+    }
+    searchExecutor = executor;
+  }
+
+  /**
+   * Turns off parallel search; all searches run on the calling thread.
+   * {@code disableParallelSearch} is not thread-safe.
+   * @see enableParallelSearch
+   */
+
+  public void disableParallelSearch() {
+    searchExecutor = null;
+  }
+
+  private boolean searchInParallel(int contactsToCheck) {
+    return searchExecutor != null && contactsToCheck >= PARALLEL_SEARCH_THRESHOLD;
+  }
+
+  /**
+   * Search for a provided string of characters in each property field for all contacts
+   * in the Address Book, one page at a time. Follows the same rules as
+   * {@code searchContactsList} and returns the same contacts in the same order, split
+   * into pages of at most limit contacts.
+   * <p>
+   * To fetch the first page pass null as the cursor. To fetch each following page pass
+   * the cursor of the previous page, {@code ContactsPage.getCursor}. A page holds the
+   * matching contacts that come after the cursor in sorted order, so contacts added or
+   * removed between pages do not cause others to be skipped or repeated.
+   * <p>
+   * Work stops as soon as the page is full: short search strings scan the Address Book
+   * from the cursor only until limit matches are found, and longer search strings only
+   * check the candidates from the search indexes.
+   * <p>
+   * {@code searchContactsPage} is not thread-safe.
+   * @param searchString the string or substring of characters to be searched for
+   * within each contact's set of property fields.
+   * @param cursor the cursor of the previous page, or null for the first page.
+   * @param limit the maximum number of contacts on the page.
+   * @return the page of contacts who match the search.
+   * @throws IllegalArgumentException if limit is not positive.
+   * @see ContactsPage
+   */
+
+  public ContactsPage searchContactsPage(String searchString, Contact cursor, int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive");
+    }
+    List<Contact> pageContacts = new ArrayList<Contact>();
+    if (searchString == null || searchString.isEmpty()) {
+      return new ContactsPage(pageContacts, false);
+    }
+    String lowerCaseSearchString = searchString.toLowerCase();
+    String number = searchNumber(searchString);
+    if (!TrigramIndex.canSearch(lowerCaseSearchString)) {
+      int start = 0;
+      if (cursor != null) {
+        int index = Collections.binarySearch(contactsList, cursor);
+        start = (index >= 0) ? index + 1 : -(index + 1);
+      }
+      for (int i = start; i < contactsList.size(); i++) {
+        Contact contact = contactsList.get(i);
+        if (contactMatches(contact, lowerCaseSearchString, number)) {
+          if (pageContacts.size() == limit) {
+            return new ContactsPage(pageContacts, true);
+          }
+          pageContacts.add(contact);
+        }
+      }
+      return new ContactsPage(pageContacts, false);
+    }
+    /* Keep the limit + 1 smallest matches after the cursor; the extra one means hasMore */
+    PriorityQueue<Contact> smallest =
+        new PriorityQueue<Contact>(limit + 1, Collections.reverseOrder());
+    for (Contact contact: searchCandidates(lowerCaseSearchString, number)) {
+      if ((cursor == null || contact.compareTo(cursor) > 0)
+          && (smallest.size() <= limit || contact.compareTo(smallest.peek()) < 0)
+          && contactMatches(contact, lowerCaseSearchString, number)) {
+        smallest.add(contact);
+        if (smallest.size() > limit + 1) {
+          smallest.poll();
+        }
+      }
+    }
+    boolean hasMore = smallest.size() > limit;
+    if (hasMore) {
+      smallest.poll();
+    }
+    pageContacts.addAll(smallest);
+    Collections.sort(pageContacts);
+    return new ContactsPage(pageContacts, hasMore);
+  }
+
+  /**
+   * Search for a provided string of characters in each property field for all contacts
+   * in the Address Book, returning only the k best matches. Contacts match as for
+   * {@code searchContactsList}, and also when the digits of a phone number search are
+   * the contact's whole phone number, so "+1 (917) 333-4444" finds the contacts with
+   * phone number "1 917 3334444". They are then ranked by their best matching field.
+   * <p>
+   * From best to worst, a contact can match: the whole phone number, an exact name, the
+   * start of the name, a whole phone number field or the start of one, the start of a
+   * word in the name, anywhere in the name, anywhere in a phone number field, the start
+   * of the email, anywhere in the email, anywhere in the postal address, and anywhere in
+   * the note. Contacts that rank equally are returned in the Address Book's sorted order.
+   * <p>
+   * Only the k best matches are kept while searching, in a bounded heap, so the full
+   * list of matches is never built.
+   * <p>
+   * {@code searchTopContacts} is not thread-safe.
+   * @param searchString the string or substring of characters to be searched for
+   * within each contact's set of property fields.
+   * @param k the maximum number of contacts to be returned.
+   * @return a list of at most k contacts who match the search, best match first.
+   * @throws IllegalArgumentException if k is not positive.
+   * @see searchContactsList
+   */
+
+  public List<Contact> searchTopContacts(String searchString, int k) {
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be positive");
+    }
+    if (searchString == null || searchString.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String lowerCaseSearchString = searchString.toLowerCase();
+    String number = searchNumber(searchString);
+    Collection<Contact> candidates = contactsList;
+    if (TrigramIndex.canSearch(lowerCaseSearchString)) {
+      candidates = searchCandidates(lowerCaseSearchString, number);
       if (!number.isEmpty()) {
-        if (contact.getPhoneNumber().contains(number)){
-          matchingContacts.add(contact);
-          continue;
-        }  	
+        /* Contacts whose whole phone number is the digits searched for */
+        Set<Contact> wholeNumbers = phoneNumberIndex.findStartingWith(number);
+        wholeNumbers.addAll(candidates);
+        candidates = wholeNumbers;
       }
-      if (contact.getName().toLowerCase().contains(lowerCaseSearchString)) {
-    	matchingContacts.add(contact);
-        continue;
+    }
+    /* The worst of the k best matches so far is at the head */
+    PriorityQueue<ContactRanking.ScoredContact> best =
+        new PriorityQueue<ContactRanking.ScoredContact>(k + 1,
+        Collections.reverseOrder(ContactRanking.BEST_FIRST));
+    for (Contact contact: candidates) {
+      int score = ContactRanking.score(contact, lowerCaseSearchString, number);
+      if (score != ContactRanking.NO_MATCH) {
+        ContactRanking.ScoredContact scored = new ContactRanking.ScoredContact(contact, score);
+        if (best.size() < k) {
+          best.add(scored);
+        } else if (ContactRanking.BEST_FIRST.compare(scored, best.peek()) < 0) {
+          best.poll();
+          best.add(scored);
+        }
       }
-      if (contact.getEmail().toLowerCase().contains(lowerCaseSearchString)){
-    	matchingContacts.add(contact);
-        continue;
+    }
+    List<ContactRanking.ScoredContact> ranked =
+        new ArrayList<ContactRanking.ScoredContact>(best);
+    Collections.sort(ranked, ContactRanking.BEST_FIRST);
+    List<Contact> topContacts = new ArrayList<Contact>(ranked.size());
+    for (ContactRanking.ScoredContact scored: ranked) {
+      topContacts.add(scored.contact);
+    }
+    return topContacts;
+  }
+
+  /**
+   * Returns a superset of the contacts that match a search, taken from the search
+   * indexes. The search string must be long enough for the trigram index. Every
+   * candidate must still be checked with {@code contactMatches}.
+   */
+
+  private Collection<Contact> searchCandidates(String lowerCaseSearchString, String number) {
+    buildIndexes();
+    Set<Contact> textCandidates = trigramIndex.candidates(lowerCaseSearchString);
+    if (number.isEmpty()) {
+      return textCandidates;
+    }
+    Set<Contact> candidates = phoneNumberIndex.findContaining(number);
+    candidates.addAll(textCandidates);
+    return candidates;
+  }
+
+  /**
+   * Search for contacts by phone number, as used for caller ID. Returns all contacts whose
+   * phone number, read as the digits of the country code, area code and subscriber number
+   * with no separators, starts with the digits of the provided string. Any characters
+   * other than digits in the provided string are ignored, so "+1 (917) 333-4444" finds
+   * the contacts with phone number "1 917 3334444".
+   * <p>
+   * Searching for null, a string without digits or a string with digits other than 0-9
+   * will return an empty list.
+   * @param phoneNumber the phone number, or the start of a phone number, to search for.
+   * @return a list of contacts whose phone number starts with the provided digits,
+   * in the Address Book's sorted order.
+   */
+
+  public List<Contact> searchContactsByPhoneNumber(String phoneNumber) {
+    if (phoneNumber == null) {
+      return Collections.emptyList();
+    }
+    String number = searchDigits(phoneNumber);
+    if (number.isEmpty()) {
+      return Collections.emptyList();
+    }
+    buildIndexes();
+    List<Contact> matchingContacts =
+        new ArrayList<Contact>(phoneNumberIndex.findStartingWith(number));
+    Collections.sort(matchingContacts);
+    return matchingContacts;
+  }
+
+  /**
+   * Search for contacts by name, allowing for misspellings. Returns all contacts whose
+   * name is within the provided number of edits of the provided name, where an edit is
+   * the insertion, deletion or substitution of a single character. Searching "Erik
+   * Schmiterer" with a distance of 2 finds "Eric Schmitterer".
+   * <p>
+   * The whole name is compared and the comparison is not case-sensitive. Searching for
+   * null will return an empty list.
+   * <p>
+   * The search is answered from a BK-tree of the contacts' names, built by the first
+   * fuzzy search and then kept up to date on every change, which skips most names
+   * without comparing them when the distance is small. Larger distances compare more of
+   * the names; a distance of the length of the name compares them all.
+   * @param name the name to be searched for.
+   * @param maxDistance the greatest number of edits allowed between the name and a
+   * contact's name.
+   * @return a list of contacts whose name is within the distance of the provided name,
+   * in the Address Book's sorted order.
+   * @throws IllegalArgumentException if maxDistance is negative.
+   */
+
+  public List<Contact> searchContactsByNameFuzzy(String name, int maxDistance) {
+    if (maxDistance < 0) {
+      throw new IllegalArgumentException("maxDistance cannot be negative");
+    }
+    if (name == null) {
+      return Collections.emptyList();
+    }
+    if (fuzzyNameIndex == null) {
+      fuzzyNameIndex = new FuzzyNameIndex();
+      for (Contact contact: contactsList) {
+        fuzzyNameIndex.add(contact);
+      }
+    }
+    List<Contact> matchingContacts = fuzzyNameIndex.find(name.toLowerCase(), maxDistance);
+    Collections.sort(matchingContacts);
+    return matchingContacts;
+  }
+
+  /**
+   * Finds the contacts in the Address Book that are likely duplicates of each other:
+   * contacts that are not equal, so were both added, but share a phone number or an
+   * email address and have names within the provided number of edits of each other,
+   * such as "Eric Schmitterer" and "Eric Schmiterer" with the same phone number.
+   * <p>
+   * Contacts are grouped into clusters: two contacts are in the same cluster if they
+   * match, or if each matches a contact in the cluster. Names and emails are compared
+   * ignoring case. Phone numbers with a subscriber number of 0, the default, and empty
+   * emails are not considered shared.
+   * <p>
+   * Contacts are only compared with contacts sharing their phone number or email, and
+   * within a large group of such contacts only with those nearest by name, so the
+   * search takes time roughly linear in the number of contacts. The Address Book is not
+   * changed; to merge a cluster, remove the contacts not wanted.
+   * <p>
+   * {@code findDuplicateContacts} is not thread-safe.
+   * @param maxNameDistance the greatest number of single character insertions,
+   * deletions and substitutions between the names of two matching contacts; 0 matches
+   * only names that differ in case.
+   * @return the clusters of two or more likely duplicates, each in the Address Book's
+   * sorted order and ordered by their first contact; empty if there are none.
+   * @throws IllegalArgumentException if maxNameDistance is negative.
+   */
+
+  public List<List<Contact>> findDuplicateContacts(int maxNameDistance) {
+    if (maxNameDistance < 0) {
+      throw new IllegalArgumentException("maxNameDistance cannot be negative");
+    }
+    return DuplicateContactFinder.find(contactsList, maxNameDistance);
+  }
+
+  /**
+   * Starts keeping secondary indexes of the contacts by lower case email, email domain,
+   * city, state and country, so that the {@code findContacts} methods take time
+   * logarithmic in the number of distinct values plus the number of contacts found,
+   * instead of scanning every contact.
+   * <p>
+   * The indexes are built from the current contacts and then kept up to date as contacts
+   * are added and removed, which adds a few sorted map updates to every change. Does
+   * nothing if the indexes are already enabled.
+   * <p>
+   * {@code enableSecondaryIndexes} is not thread-safe.
+   * @see disableSecondaryIndexes
+   */
+
+  public void enableSecondaryIndexes() {
+    if (secondaryIndexes != null) {
+      return;
+    }
+    SecondaryIndexes indexes = new SecondaryIndexes();
+    for (Contact contact: contactsList) {
+      indexes.add(contact);
+    }
+    secondaryIndexes = indexes;
+  }
+
+  /**
+   * Stops keeping secondary indexes and releases them. The {@code findContacts} methods
+   * scan every contact until the indexes are enabled again.
+   * <p>
+   * {@code disableSecondaryIndexes} is not thread-safe.
+   * @see enableSecondaryIndexes
+   */
+
+  public void disableSecondaryIndexes() {
+    secondaryIndexes = null;
+  }
+
+  /**
+   * Finds the contacts whose email address starts with the provided prefix, ignoring
+   * case. For example "jsmith" finds "jsmith@nyu.edu" and "JSmith2@gmail.com".
+   * <p>
+   * Searching for null or an empty string will return an empty list.
+   * @param prefix the start of the email addresses to find.
+   * @return a list of the contacts found, in the Address Book's sorted order.
+   * @see enableSecondaryIndexes
+   */
+
+  public List<Contact> findContactsByEmailPrefix(String prefix) {
+    return findContacts(SecondaryIndexes.Field.EMAIL, prefix, true);
+  }
+
+  /**
+   * Finds the contacts whose email address is at the provided domain, ignoring case. A
+   * leading '@' is ignored, so "nyu.edu" and "@nyu.edu" both find "jsmith@nyu.edu" but
+   * not "jsmith@cs.nyu.edu".
+   * <p>
+   * Searching for null or an empty string will return an empty list.
+   * @param domain the domain of the email addresses to find.
+   * @return a list of the contacts found, in the Address Book's sorted order.
+   * @see enableSecondaryIndexes
+   */
+
+  public List<Contact> findContactsByEmailDomain(String domain) {
+    if (domain != null && domain.startsWith("@")) {
+      domain = domain.substring(1);
+    }
+    return findContacts(SecondaryIndexes.Field.EMAIL_DOMAIN, domain, false);
+  }
+
+  /**
+   * Finds the contacts whose postal address is in the provided city, ignoring case.
+   * <p>
+   * The city is known for contacts built with {@code Contact.Builder.postalAddress},
+   * including those read from a snapshot. A contact read from a snapshot saved before
+   * the fields were stored, whose address fields contain spaces, has no known city and
+   * is not found.
+   * Searching for null or an empty string will return an empty list.
+   * @param city the city of the contacts to find.
+   * @return a list of the contacts found, in the Address Book's sorted order.
+   * @see enableSecondaryIndexes
+   */
+
+  public List<Contact> findContactsInCity(String city) {
+    return findContacts(SecondaryIndexes.Field.CITY, city, false);
+  }
+
+  /**
+   * Finds the contacts whose postal address is in the provided state, ignoring case.
+   * Follows the same rules as {@code findContactsInCity}.
+   * @param state the state of the contacts to find.
+   * @return a list of the contacts found, in the Address Book's sorted order.
+   * @see findContactsInCity
+   */
+
+  public List<Contact> findContactsInState(String state) {
+    return findContacts(SecondaryIndexes.Field.STATE, state, false);
+  }
+
+  /**
+   * Finds the contacts whose postal address is in the provided country, ignoring case.
+   * Follows the same rules as {@code findContactsInCity}.
+   * @param country the country of the contacts to find.
+   * @return a list of the contacts found, in the Address Book's sorted order.
+   * @see findContactsInCity
+   */
+
+  public List<Contact> findContactsInCountry(String country) {
+    return findContacts(SecondaryIndexes.Field.COUNTRY, country, false);
+  }
+
+  /**
+   * Finds the contacts whose key for the field is, or starts with, the value, using the
+   * secondary indexes if they are enabled and scanning the sorted list otherwise.
+   */
+
+  private List<Contact> findContacts(SecondaryIndexes.Field field, String value,
+      boolean prefix) {
+    if (value == null || value.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String key = value.toLowerCase();
+    if (secondaryIndexes != null) {
+      return prefix ? secondaryIndexes.findWithPrefix(field, key)
+          : secondaryIndexes.find(field, key);
+    }
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    for (Contact contact: contactsList) {
+      String contactKey = field.key(contact);
+      if (prefix ? contactKey.startsWith(key) : contactKey.equals(key)) {
+        matchingContacts.add(contact);
       }
-      if (contact.getPostalAddress().toLowerCase().contains(lowerCaseSearchString)){
-    	matchingContacts.add(contact);
-        continue;
+    }
+    return matchingContacts;
+  }
+
+  /**
+   * Returns the digits of the search string if it is a phone number search, that is if
+   * its first character is a digit, a '+' or a '('. Otherwise returns an empty string.
+   */
+
+  static String searchNumber(String searchString) {
+    char firstChar = searchString.charAt(0);
+    if (Character.isDigit(firstChar) || firstChar == '+' || firstChar == '(') {
+      return searchDigits(searchString);
+    } else {
+      return "";
+    }
+  }
+
+  /**
+   * Returns the digits of the search string, or an empty string if any of them is not
+   * 0-9. Phone numbers are stored with the digits 0-9 only, so a search holding any
+   * other digit, such as an Arabic-Indic one, cannot match them.
+   */
+
+  private static String searchDigits(String searchString) {
+    String digits = Contact.parseStringToNumberString(searchString);
+    for (int i = 0; i < digits.length(); i++) {
+      if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+        return "";
       }
-      if (contact.getNote().toLowerCase().contains(lowerCaseSearchString)) {
-    	matchingContacts.add(contact);
-        continue;    	  
+    }
+    return digits;
+  }
+
+  /**
+   * Returns the contacts that match a search, in iteration order. Used both to scan the
+   * whole Address Book for search strings that are too short to be answered by the
+   * trigram index and to check the candidates from the search indexes. Runs in parallel
+   * if there are enough contacts to check.
+   */
+
+  private List<Contact> filterMatches(Collection<Contact> contacts,
+      String lowerCaseSearchString, String number) {
+    if (searchInParallel(contacts.size())) {
+      List<Contact> contactsToCheck = (contacts instanceof List)
+          ? (List<Contact>) contacts : new ArrayList<Contact>(contacts);
+      return ParallelContactFilter.filter(contactsToCheck, lowerCaseSearchString, number,
+          searchExecutor);
+    }
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    for (Contact contact: contacts) {
+      if (contactMatches(contact, lowerCaseSearchString, number)) {
+        matchingContacts.add(contact);
       }
     }
     return matchingContacts;
   }
- 
+
+  /**
+   * Returns true if the contact's phone number contains the provided digits or if one
+   * of its property fields contains the lower case search string.
+   * @param contact the contact to be checked.
+   * @param lowerCaseSearchString the lower case search string.
+   * @param number the digits of a phone number search; empty if not a phone number search.
+   * @return true if the contact matches the search.
+   */
+
+  static boolean contactMatches(Contact contact, String lowerCaseSearchString, String number) {
+    if (!number.isEmpty() && contact.getPhoneNumber().contains(number)) {
+      return true;
+    }
+    return fieldsContain(contact, lowerCaseSearchString);
+  }
+
+  private static boolean fieldsContain(Contact contact, String lowerCaseSearchString) {
+    return contact.getLowerCaseName().contains(lowerCaseSearchString)
+        || contact.getLowerCaseEmail().contains(lowerCaseSearchString)
+        || contact.getLowerCasePostalAddress().contains(lowerCaseSearchString)
+        || contact.getLowerCaseNote().contains(lowerCaseSearchString);
+  }
+
   /**
    * Removes the provided contact from the Address Book.
    * <p>
@@ -139,18 +772,35 @@ public class AddressBook {
    * <p>
    * This is one of two methods provided to remove a contact.
    * <p>
+   * Membership is checked with a hash set of the contacts in the Address Book and the
+   * contact is located in the sorted list by a binary search.
+   * <p>
    * {@code removeContact} is not thread-safe.
    * @param contact
    * @return true if the contact is successfully removed; false otherwise.
    * @throws NullPointerException if {@code Contact} is null.
+   * @throws IllegalStateException if journaling is enabled and the change cannot be
+   * journaled, in which case the Address Book is left unchanged.
    * @see removeContact
    */
   
   public boolean removeContact(Contact contact) {
     if (contact == null) {
-      throw new NullPointerException("contact cannot be null");	
-    }  
-    return contactsList.remove(contact);
+      throw new NullPointerException("contact cannot be null");
+    }
+    if (!contactsSet.contains(contact)) {
+      return false;
+    }
+    int index = Collections.binarySearch(contactsList, contact);
+    /* Journal and unindex the stored contact; it may differ in case from the one provided */
+    Contact removed = contactsList.get(index);
+    journalRemoved(removed);
+    contactsList.remove(index);
+    contactsSet.remove(removed);
+    unindex(removed);
+    contactRemoved(index, removed);
+    compactJournalIfFull();
+    return true;
   }
   
   /**
@@ -165,6 +815,8 @@ public class AddressBook {
    * @return the contact that was removed. null if the {@code ArrayList} is empty.
    * @throws IndexOutOfBoundsException if contacts list is empty.
    * @throws IllegalArgumentException if index is negative or out of range.
+   * @throws IllegalStateException if journaling is enabled and the change cannot be
+   * journaled, in which case the Address Book is left unchanged.
    */
   
   public Contact removeContactAtIndex(int index) {
@@ -174,13 +826,340 @@ public class AddressBook {
     if (index < 0) {
        throw new IllegalArgumentException();
     }
-    return contactsList.remove(index);
+    Contact removed = contactsList.get(index);
+    journalRemoved(removed);
+    contactsList.remove(index);
+    contactsSet.remove(removed);
+    unindex(removed);
+    contactRemoved(index, removed);
+    compactJournalIfFull();
+    return removed;
+  }
+
+  /**
+   * Registers an observer to be notified of every contact added to or removed from the
+   * Address Book from now on.
+   * <p>
+   * Each change is given the next version number and observers are notified in
+   * version order, once the change has been made. An observer that copies the Address
+   * Book with {@code getUnmodifiableContactsList} and {@code getVersion} and then
+   * applies each change it is notified of stays up to date without copying the Address
+   * Book again. An observer must not change the Address Book while it is being
+   * notified.
+   * <p>
+   * {@code registerObserver} is not thread-safe.
+   * @param observer the observer to be added to the list of observers.
+   * @throws NullPointerException if observer is null.
+   * @see getChangesSince
+   */
+
+  public void registerObserver(AddressBookObserver observer) {
+    if (observer == null) {
+      throw new NullPointerException("observer cannot be null");
+    }
+    observers.add(observer);
+  }
+
+  /**
+   * Removes the provided observer, if it is registered, from the list of observers
+   * notified of changes to the Address Book.
+   * <p>
+   * {@code removeObserver} is not thread-safe.
+   * @param observer the observer to be removed from the list of observers.
+   */
+
+  public void removeObserver(AddressBookObserver observer) {
+    observers.remove(observer);
+  }
+
+  /**
+   * Returns the version of the Address Book: the number of contacts added to or
+   * removed from it since it was created. Each change increments the version by one.
+   * <p>
+   * {@code getVersion} is not thread-safe.
+   * @return the current version; 0 if the Address Book has never been changed.
+   */
+
+  public long getVersion() {
+    return changeFeed.getVersion();
+  }
+
+  /**
+   * Returns the changes made to the Address Book after the provided version, in
+   * version order.
+   * <p>
+   * A copy of the Address Book taken at the provided version is brought up to date by
+   * applying the changes returned in order, so a cache or replica that polls the
+   * Address Book only reads what has changed since it last polled. The latest
+   * {@code CHANGE_FEED_CAPACITY} changes are held; if some of the changes after the
+   * version are no longer held, the method returns null and the copy must be taken
+   * again.
+   * <p>
+   * {@code getChangesSince} is not thread-safe.
+   * @param version the version of the copy to be brought up to date.
+   * @return the changes made after the version; empty if there are none, or null if
+   * some of them are no longer held.
+   * @throws IllegalArgumentException if version is negative or greater than the
+   * current version.
+   * @see getVersion
+   */
+
+  public List<ContactChange> getChangesSince(long version) {
+    return changeFeed.changesSince(version);
+  }
+
+  /**
+   * Returns an immutable list of the contacts in the Address Book as they are now,
+   * which can be read from any thread, without locking, while the Address Book goes on
+   * being changed.
+   * <p>
+   * The list never changes. It is a persistent sorted tree rather than a copy: once the
+   * first list has been requested, every change to the Address Book makes a new list
+   * that shares all but a logarithmic number of nodes with the list before it, so
+   * taking a list costs nothing and readers holding older lists are unaffected. The
+   * list's {@code getVersion} gives the version of the Address Book it holds, for use
+   * with {@code getChangesSince}.
+   * <p>
+   * The first call builds the list from the contacts, in time linear in their number,
+   * and must not be made while the Address Book is being changed. Later calls are
+   * thread-safe: they read the latest list published by the thread changing the
+   * Address Book, without blocking it.
+   * @return an immutable list of the contacts in the Address Book at its latest version.
+   * @see getUnmodifiableContactsList
+   */
+
+  public ImmutableContactsList getContactsSnapshot() {
+    ImmutableContactsList snapshot = contactsSnapshot;
+    if (snapshot == null) {
+      snapshot = ImmutableContactsList.of(contactsList, changeFeed.getVersion());
+      contactsSnapshot = snapshot;
+    }
+    return snapshot;
+  }
+
+  /**
+   * Brings the contacts snapshot, if one has been requested, up to date with contacts
+   * just added at the provided indexes of the contacts list. A few contacts are
+   * inserted into the snapshot one at a time; many are added by building it again.
+   */
+
+  private void updateContactsSnapshot(Contact[] addedContacts, int[] indexes, int added) {
+    ImmutableContactsList snapshot = contactsSnapshot;
+    if (snapshot == null || added == 0) {
+      return;
+    }
+    long version = changeFeed.getVersion() - added;
+    if ((long) added * SNAPSHOT_REBUILD_RATIO < contactsList.size()) {
+      for (int k = 0; k < added; k++) {
+        snapshot = snapshot.withContactAt(indexes[k], addedContacts[k], ++version);
+      }
+      contactsSnapshot = snapshot;
+    } else {
+      contactsSnapshot = ImmutableContactsList.of(contactsList, changeFeed.getVersion());
+    }
+  }
+
+  /**
+   * Records a contact that was added to the contacts list at the provided index in the
+   * change feed and the contacts snapshot, and notifies the observers.
+   */
+
+  private void contactAdded(int index, Contact contact) {
+    long version = changeFeed.record(contact, true);
+    if (contactsSnapshot != null) {
+      contactsSnapshot = contactsSnapshot.withContactAt(index, contact, version);
+    }
+    notifyObserversAdded(contact, version);
+  }
+
+  private void contactRemoved(int index, Contact contact) {
+    long version = changeFeed.record(contact, false);
+    if (contactsSnapshot != null) {
+      contactsSnapshot = contactsSnapshot.withoutContactAt(index, version);
+    }
+    for (AddressBookObserver observer: observers) {
+      observer.contactRemoved(contact, version);
+    }
+  }
+
+  private void notifyObserversAdded(Contact contact, long version) {
+    for (AddressBookObserver observer: observers) {
+      observer.contactAdded(contact, version);
+    }
+  }
+
+  /**
+   * Starts recording every change to the Address Book in a journal kept alongside a
+   * binary snapshot, so the Address Book can be saved incrementally.
+   * <p>
+   * The Address Book is first saved as a snapshot to the provided path, and an empty
+   * journal is created at the same path with {@code .journal} appended, replacing any
+   * existing journal. From then on each contact added or removed is appended to the
+   * journal before the Address Book is changed; a change that cannot be appended is not
+   * made. {@code readAddressBookFromSnapshot} replays the journal after reading the
+   * snapshot, so the two together always hold the current contacts.
+   * <p>
+   * Once the journal holds more changes than both {@code JOURNAL_COMPACTION_THRESHOLD}
+   * and the number of contacts, the snapshot is saved again and the journal emptied. If
+   * that fails the change still succeeds, the journal is kept, and the save is tried
+   * again after the next change.
+   * <p>
+   * To resume journaling an Address Book saved earlier, read it with
+   * {@code readAddressBookFromSnapshot} and then enable journaling with the same path.
+   * {@code enableJournal} is not thread-safe.
+   * @param filePath the absolute path where the snapshot is to be saved.
+   * @throws IOException if the method fails to save the snapshot or create the journal.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   * @see compactJournal
+   */
+
+  public void enableJournal(String filePath) throws IOException, FileNotFoundException {
+    if (filePath == null) {
+      throw new NullPointerException("filePath cannot be null");
+    }
+    disableJournal();
+    ContactsSnapshot.write(contactsList, filePath);
+    journal = new ContactsJournal(ContactsJournal.journalPath(filePath));
+    journalSnapshotPath = filePath;
+  }
+
+  /**
+   * Saves the Address Book to the snapshot of its journal and empties the journal.
+   * <p>
+   * {@code compactJournal} is not thread-safe.
+   * @throws IOException if the method fails to save the snapshot or empty the journal.
+   * @throws IllegalStateException if journaling is not enabled.
+   * @see enableJournal
+   */
+
+  public void compactJournal() throws IOException {
+    if (journal == null) {
+      throw new IllegalStateException("journaling is not enabled");
+    }
+    ContactsSnapshot.write(contactsList, journalSnapshotPath);
+    journal.truncate();
+  }
+
+  /**
+   * Stops recording changes to the Address Book and closes its journal. The snapshot and
+   * journal are left as they are, so reading the snapshot gives the contacts as they
+   * were when journaling stopped. Does nothing if journaling is not enabled.
+   * <p>
+   * {@code disableJournal} is not thread-safe.
+   * @throws IOException if the journal cannot be closed.
+   */
+
+  public void disableJournal() throws IOException {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } finally {
+      journal = null;
+      journalSnapshotPath = null;
+    }
+  }
+
+  /**
+   * Builds the search indexes from the contacts list if they have not been built yet.
+   * The indexes are built by the first search rather than as contacts are loaded, so
+   * bulk loads stay fast; once built they are kept up to date on every change.
+   */
+
+  private void buildIndexes() {
+    if (trigramIndex == null) {
+      trigramIndex = new TrigramIndex();
+      phoneNumberIndex = new PhoneNumberIndex();
+      for (Contact contact: contactsList) {
+        trigramIndex.add(contact);
+        phoneNumberIndex.add(contact);
+      }
+    }
+  }
+
+  private void index(Contact contact) {
+    if (trigramIndex != null) {
+      trigramIndex.add(contact);
+      phoneNumberIndex.add(contact);
+    }
+    if (secondaryIndexes != null) {
+      secondaryIndexes.add(contact);
+    }
+    if (fuzzyNameIndex != null) {
+      fuzzyNameIndex.add(contact);
+    }
+  }
+
+  private void unindex(Contact contact) {
+    if (trigramIndex != null) {
+      trigramIndex.remove(contact);
+      phoneNumberIndex.remove(contact);
+    }
+    if (secondaryIndexes != null) {
+      secondaryIndexes.remove(contact);
+    }
+    if (fuzzyNameIndex != null) {
+      fuzzyNameIndex.remove(contact);
+    }
+  }
+
+  /**
+   * Appends the contacts about to be added to the journal, if journaling is enabled. An
+   * append that fails is reported before the Address Book is changed.
+   */
+
+  private void journalAdded(List<Contact> contacts) {
+    if (journal == null || contacts.isEmpty()) {
+      return;
+    }
+    try {
+      journal.appendAdded(contacts);
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to append to the journal", e);
+    }
+  }
+
+  private void journalRemoved(Contact contact) {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.appendRemoved(Collections.singletonList(contact));
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to append to the journal", e);
+    }
+  }
+
+  /**
+   * Compacts the journal once it has grown past the threshold. Called after a change has
+   * been journaled and made, so a failure must not be reported as a failure of the
+   * change. The snapshot is replaced atomically and the journal replays correctly over
+   * either snapshot, so the journal is left in place and compaction is tried again on
+   * the next change.
+   */
+
+  private void compactJournalIfFull() {
+    if (journal == null || journal.getRecordCount()
+        <= Math.max(JOURNAL_COMPACTION_THRESHOLD, contactsList.size())) {
+      return;
+    }
+    try {
+      compactJournal();
+    } catch (IOException e) {
+      /* The journal still holds every change; the next change retries */
+    }
   }
   
   /**
    * Saves the list of contacts in Address Book to a file.
    * <p>
    * Uses JSON format to store the list of contacts.
+   * <p>
+   * The file is replaced atomically: the contacts are written to a temporary file in the
+   * same directory, forced to the disk and renamed over the file, so a crash during the
+   * save leaves either the previous file or the new one, never a partly written file.
+   * The streaming and snapshot saves replace their files the same way.
    * {@code saveAddressBookToFile} is not thread-safe.
    * @param filePath the absolute path where the list of contacts are to be saved.
    * @throws IOException if the method fails to save the file for any reason.
@@ -189,6 +1168,66 @@ public class AddressBook {
   
   public void saveAddressBookToFile(String filePath) throws IOException, 
       FileNotFoundException {
+    writeContactsToFile(contactsList, filePath);
+  }
+
+  /**
+   * Saves the list of contacts in Address Book to a file on a background thread, in the
+   * same format as {@code saveAddressBookToFile}.
+   * <p>
+   * The contacts saved are those of {@code getContactsSnapshot}, which takes constant
+   * time once a snapshot has been requested, so saving does not copy the contacts. The
+   * Address Book may be changed as soon as the method returns; later changes are not
+   * part of this save. The file is written and replaced atomically by a single writer
+   * thread shared by every background save of this Address Book.
+   * <p>
+   * If a background save of the same file is still waiting to start, it is given the
+   * newer snapshot of the contacts instead of queuing another write, and both calls return
+   * the same future.
+   * <p>
+   * {@code saveAddressBookToFileAsync} is not thread-safe.
+   * @param filePath the absolute path where the list of contacts are to be saved.
+   * @return a future that completes when the file has been saved; its {@code get}
+   * method throws an {@code ExecutionException} wrapping the {@code IOException} if
+   * the save failed.
+   * @throws NullPointerException if filePath is null.
+   * @see getSaveStatistics
+   */
+
+  public Future<Void> saveAddressBookToFileAsync(String filePath) {
+    if (filePath == null) {
+      throw new NullPointerException("filePath cannot be null");
+    }
+    if (backgroundSaver == null) {
+      backgroundSaver = new BackgroundSaver();
+    }
+    return backgroundSaver.save(getContactsSnapshot(), filePath);
+  }
+
+  /**
+   * Returns statistics on the background saves of this Address Book: how many are
+   * queued, how many completed, failed or were coalesced, and how long writes took.
+   * <p>
+   * {@code getSaveStatistics} is thread-safe.
+   * @return a snapshot of the background save statistics.
+   * @see saveAddressBookToFileAsync
+   */
+
+  public SaveStatistics getSaveStatistics() {
+    BackgroundSaver saver = backgroundSaver;
+    if (saver == null) {
+      return new SaveStatistics(0, 0, 0, 0, 0, 0);
+    }
+    return saver.getStatistics();
+  }
+
+  /**
+   * Writes the provided contacts to a file in the JSON format of
+   * {@code saveAddressBookToFile}.
+   */
+
+  static void writeContactsToFile(List<Contact> contactsList, String filePath)
+      throws IOException, FileNotFoundException {
     List<HashMap<String,String>> contactsArray = new JSONArray();
     JSONObject contacts = new JSONObject();
     for (Contact c: contactsList) {	
@@ -203,14 +1242,23 @@ public class AddressBook {
     }
     contacts.put("Contacts List", contactsArray);
 	
-    FileWriter file = new FileWriter(filePath);
-    file.write(contacts.toJSONString());
-    file.flush();
-    file.close();
+    final String json = contacts.toJSONString();
+    AtomicFileWriter.write(filePath, new AtomicFileWriter.Contents() {
+      @Override
+      public void writeTo(FileChannel channel) throws IOException {
+        /* Written in the default charset, as read by readAddressBookFromFile */
+        Writer file = new OutputStreamWriter(Channels.newOutputStream(channel),
+            Charset.defaultCharset());
+        file.write(json);
+        file.flush();
+      }
+    });
   }
   
   /**
    * Reads an Address Book of contacts from the provided file.
+   * The contacts read are added in a single pass with {@code addContacts}; contacts
+   * that already exist in the Address Book are skipped.
    * {@code readAddressBookFromFile} is not thread-safe.
    * @param filePath the absolute path where the list of contacts are to be read.
    * @throws IOException if the method fails to read the file for any reason.
@@ -224,6 +1272,7 @@ public class AddressBook {
     Object obj = parser.parse(new FileReader(filePath));
     JSONObject contacts = (JSONObject) obj;
     JSONArray contactsArray = (JSONArray) contacts.get("Contacts List");
+    List<Contact> contactsRead = new ArrayList<Contact>(contactsArray.size());
     Iterator<?> iterator = contactsArray.iterator();
     while (iterator.hasNext()) {
       JSONObject JSONContact = (JSONObject) iterator.next();
@@ -232,33 +1281,152 @@ public class AddressBook {
       String email = (String) JSONContact.get("email");
       String address = (String) JSONContact.get("address");
       String note = (String) JSONContact.get("note");
-      String delims = "[ ]+";
-      String[] numberTokens = phoneNumber.split(delims);
-      String[] addressTokens = address.split(delims);
-      int addressLength = 6;
-      int numberLength = 3;
-      
-      Contact contact;
-      if (numberTokens.length == numberLength && addressTokens.length == addressLength) {
-        contact = new Contact.Builder(name, numberTokens[0], numberTokens[1], numberTokens[2])
-    	    .postalAddress(addressTokens[0], addressTokens[1], addressTokens[2], addressTokens[3],
-    	    addressTokens[4], addressTokens[5]).emailAddress(email).note(note).build();  
-      } else if (numberTokens.length == numberLength) {
-        contact = new Contact.Builder(name, numberTokens[0], numberTokens[1], numberTokens[2])
-            .emailAddress(email).note(note).build();  
-      } else if (addressTokens.length == addressLength) {
-        contact = new Contact.Builder(name, "1", "000", "0000000")
-    	    .postalAddress(addressTokens[0], addressTokens[1], addressTokens[2], addressTokens[3],
-    	    addressTokens[4], addressTokens[5]).emailAddress(email).note(note).build();   
-      } else {
-        contact = new Contact.Builder(name, "1", "000", "0000000")
-            .emailAddress(email).note(note).build();  
-      }	  
-      addContact(contact); 
+      contactsRead.add(buildContact(name, phoneNumber, email, address, note));
     }
-        
+    addContacts(contactsRead);
   }
-  
+
+  /**
+   * Reads an Address Book of contacts from the provided file, building the contacts on
+   * the threads of the provided executor.
+   * <p>
+   * Reads the same file as {@code readAddressBookFromFile}. The file is parsed one
+   * record at a time on the calling thread; the records are handed out in chunks to the
+   * executor, whose threads tokenize the phone numbers and postal addresses and build the
+   * contacts. Once every chunk has been built the contacts are added in a single pass
+   * with {@code addContacts}, in one sort and merge. Prefer this method for large files
+   * on a machine with several processors.
+   * <p>
+   * The executor is not shut down. {@code readAddressBookFromFile} is not thread-safe.
+   * @param filePath the absolute path where the list of contacts are to be read.
+   * @param executor the executor to build the contacts on.
+   * @throws IOException if the method fails to read the file for any reason.
+   * @throws ParseException if the method fails to parse the data in the file.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   * @throws NullPointerException if executor is null.
+   * @throws IllegalStateException if the thread is interrupted while waiting for the
+   * contacts to be built.
+   * @see readAddressBookFromFile(String)
+   */
+
+  public void readAddressBookFromFile(String filePath, ExecutorService executor)
+      throws IOException, ParseException, FileNotFoundException {
+    if (executor == null) {
+      throw new NullPointerException("executor cannot be null");
+    }
+    addContacts(ParallelContactImport.read(filePath, Charset.defaultCharset(), executor));
+  }
+
+  /**
+   * Saves the list of contacts in Address Book to a file, writing one contact at a time.
+   * <p>
+   * Produces the same JSON format as {@code saveAddressBookToFile}, encoded as UTF-8,
+   * without building the whole JSON document in memory first. Prefer this method for
+   * large Address Books.
+   * {@code saveAddressBookToFileStreaming} is not thread-safe.
+   * @param filePath the absolute path where the list of contacts are to be saved.
+   * @throws IOException if the method fails to save the file for any reason.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   * @see saveAddressBookToFile
+   */
+
+  public void saveAddressBookToFileStreaming(String filePath) throws IOException,
+      FileNotFoundException {
+    ContactsJsonStream.write(contactsList, filePath);
+  }
+
+  /**
+   * Reads an Address Book of contacts from the provided file, parsing one contact at
+   * a time.
+   * <p>
+   * Reads the same JSON format as {@code readAddressBookFromFile}, encoded as UTF-8,
+   * without parsing the whole JSON document into memory first. Prefer this method for
+   * large files. The contacts read are added in a single pass with {@code addContacts}.
+   * {@code readAddressBookFromFileStreaming} is not thread-safe.
+   * @param filePath the absolute path where the list of contacts are to be read.
+   * @throws IOException if the method fails to read the file for any reason.
+   * @throws ParseException if the method fails to parse the data in the file.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   * @see readAddressBookFromFile
+   */
+
+  public void readAddressBookFromFileStreaming(String filePath) throws IOException,
+      ParseException, FileNotFoundException {
+    final List<Contact> contactsRead = new ArrayList<Contact>();
+    ContactsJsonStream.read(filePath, new ContactsJsonStream.RecordHandler() {
+      @Override
+      public void record(String name, String number, String email, String address,
+          String note) {
+        contactsRead.add(buildContact(name, number, email, address, note));
+      }
+    });
+    addContacts(contactsRead);
+  }
+
+  /**
+   * Saves the list of contacts in Address Book to a binary snapshot file.
+   * <p>
+   * A snapshot stores the contacts in the Address Book's sorted order with their phone
+   * numbers in numeric form, so it can be read back much faster than the JSON format
+   * used by {@code saveAddressBookToFile}. Snapshots can be read with
+   * {@code readAddressBookFromSnapshot} or opened read-only without loading every
+   * contact with {@code MappedAddressBook.open}.
+   * {@code saveAddressBookToSnapshot} is not thread-safe.
+   * @param filePath the absolute path where the snapshot is to be saved.
+   * @throws IOException if the method fails to save the file for any reason.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   */
+
+  public void saveAddressBookToSnapshot(String filePath) throws IOException,
+      FileNotFoundException {
+    ContactsSnapshot.write(contactsList, filePath);
+  }
+
+  /**
+   * Reads an Address Book of contacts from a binary snapshot file saved by
+   * {@code saveAddressBookToSnapshot}.
+   * <p>
+   * The contacts are stored already sorted, so adding them with {@code addContacts}
+   * does a single linear merge with any contacts already in the Address Book. If a
+   * journal saved by {@code enableJournal} exists alongside the snapshot, its changes
+   * are then applied in order.
+   * {@code readAddressBookFromSnapshot} is not thread-safe.
+   * @param filePath the absolute path where the snapshot is to be read.
+   * @throws IOException if the method fails to read the file for any reason, or if the
+   * file is not a snapshot of a supported version.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   */
+
+  public void readAddressBookFromSnapshot(String filePath) throws IOException,
+      FileNotFoundException {
+    addContacts(ContactsSnapshot.read(filePath));
+    ContactsJournal.replay(ContactsJournal.journalPath(filePath),
+        new ContactsJournal.ReplayHandler() {
+          @Override
+          public void added(Contact contact) {
+            addContact(contact);
+          }
+
+          @Override
+          public void removed(Contact contact) {
+            removeContact(contact);
+          }
+        });
+  }
+
+  /**
+   * Builds a {@code Contact} from the string fields used to store a contact in a file.
+   * The phone number and postal address are split on spaces; if either does not have
+   * the expected number of fields it is replaced by the default value. The fields are
+   * scanned in place by {@code ContactRecordParser} rather than split with a regular
+   * expression.
+   */
+
+  static Contact buildContact(String name, String phoneNumber, String email,
+      String address, String note) {
+    return ContactRecordParser.parse(name, phoneNumber, email, address, note);
+  }
+
   /**
    * Builds a single string composed of each {@code toString} method for each 
    * contact in the Address Book.
@@ -291,6 +1459,11 @@ public class AddressBook {
    * <p>
    * In order to modify the internal {@code ArrayList} use {@code addContact} and
    * {@code removeContact} or {@code removeContactAtIndex}.
+   * <p>
+   * The view reflects later changes to the Address Book and must not be read while the
+   * Address Book is being changed. To read the contacts from another thread while they
+   * are changed, use {@code getContactsSnapshot}, which returns a list that never
+   * changes.
    * @return an unmodifiable list of contacts in the Address Book.
    */
   
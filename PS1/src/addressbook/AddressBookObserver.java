@@ -0,0 +1,32 @@
+package addressbook;
+
+/**
+ * The {@code AddressBookObserver} interface provides a set of abstract methods to be
+ * implemented by anything that keeps a copy of the contacts of an {@code AddressBook},
+ * such as a cache or a search replica, and wants to be told of each change instead of
+ * copying the Address Book again.
+ * <p>
+ * Every change to an Address Book is given the next version number, starting from 1.
+ * Observers are notified of each change in version order, after it has been made, on
+ * the thread that made it. An observer registered after some changes were made can
+ * catch up on them with {@code AddressBook.getChangesSince}.
+ * @author Eric
+ * @see AddressBook#registerObserver
+ *
+ */
+public interface AddressBookObserver {
+
+  /**
+   * Notifies the observer that a contact was added to the Address Book.
+   * @param contact the contact that was added.
+   * @param version the version of the Address Book once the contact was added.
+   */
+  void contactAdded(Contact contact, long version);
+
+  /**
+   * Notifies the observer that a contact was removed from the Address Book.
+   * @param contact the contact that was removed, as it was stored in the Address Book.
+   * @param version the version of the Address Book once the contact was removed.
+   */
+  void contactRemoved(Contact contact, long version);
+}
@@ -0,0 +1,105 @@
+package addressbook;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code AsciiText} class checks UTF-8 encoded text held in a byte buffer against a
+ * lower case search string without decoding it, when both are ASCII.
+ * <p>
+ * In UTF-8 every byte of a character outside ASCII is at least {@code 0x80}, so text
+ * without such bytes is ASCII and each byte is one character. When the default locale
+ * lower cases the ASCII letters to ASCII, as all but a few do, the lower case of ASCII
+ * text is found by folding its bytes one at a time, and it can only contain a search
+ * string that is itself ASCII. Text that is not ASCII must be decoded to be compared.
+ * <p>
+ * {@code AsciiText} is used internally by {@code MappedAddressBook} and
+ * {@code ColumnarAddressBook}.
+ * @author Eric
+ *
+ */
+
+final class AsciiText {
+
+  /**
+   * True if {@code toLowerCase} maps each ASCII letter to its ASCII lower case in the
+   * default locale, so ASCII text can be compared without decoding it.
+   */
+  static final boolean LOWER_CASE_IS_SIMPLE = lowerCaseIsSimple();
+
+  private AsciiText() {
+  }
+
+  /**
+   * Returns the bytes of the string if it is entirely ASCII; otherwise null.
+   * @param string the string to be encoded.
+   * @return the ASCII bytes of the string, or null if it has other characters.
+   */
+
+  static byte[] bytes(String string) {
+    byte[] bytes = new byte[string.length()];
+    for (int i = 0; i < bytes.length; i++) {
+      char c = string.charAt(i);
+      if (c >= 0x80) {
+        return null;
+      }
+      bytes[i] = (byte) c;
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns true if the UTF-8 bytes between the provided positions are all ASCII.
+   * @param buffer the buffer holding the text.
+   * @param start the position of the first byte.
+   * @param end the position after the last byte.
+   * @return true if no byte is outside ASCII.
+   */
+
+  static boolean isAscii(ByteBuffer buffer, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (buffer.get(i) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns true if the ASCII text between the provided positions contains the lower
+   * case ASCII bytes, with the upper case letters of the text read as lower case.
+   * @param buffer the buffer holding the text.
+   * @param start the position of the first byte.
+   * @param end the position after the last byte.
+   * @param lowerCaseBytes the lower case ASCII bytes to look for.
+   * @return true if the text contains the bytes, ignoring case.
+   */
+
+  static boolean containsIgnoringCase(ByteBuffer buffer, int start, int end,
+      byte[] lowerCaseBytes) {
+    int last = end - lowerCaseBytes.length;
+    for (int i = start; i <= last; i++) {
+      int j = 0;
+      while (j < lowerCaseBytes.length
+          && toLowerCase(buffer.get(i + j)) == lowerCaseBytes[j]) {
+        j++;
+      }
+      if (j == lowerCaseBytes.length) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static byte toLowerCase(byte b) {
+    return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+  }
+
+  private static boolean lowerCaseIsSimple() {
+    for (char c = 'A'; c <= 'Z'; c++) {
+      if (!String.valueOf(c).toLowerCase().equals(String.valueOf((char) (c + 32)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,89 @@
+package addressbook;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * The {@code AtomicFileWriter} class replaces a file with new contents so that a crash
+ * never leaves it partly written.
+ * <p>
+ * The contents are written to a temporary file in the same directory as the target,
+ * forced to the disk, and then renamed over the target. A crash before the rename leaves
+ * the previous file untouched; once the rename is done the new contents are complete.
+ * The rename replaces the target atomically on POSIX file systems. Where the target
+ * cannot be renamed over, it is deleted first and the replacement is no longer atomic,
+ * although the complete new contents remain in the temporary file until the rename
+ * succeeds.
+ * <p>
+ * {@code AtomicFileWriter} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook#saveAddressBookToFile
+ *
+ */
+
+final class AtomicFileWriter {
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  /**
+   * Writes the contents of a file to its channel.
+   */
+
+  interface Contents {
+
+    /**
+     * Writes the whole of the contents to the channel, which is left open.
+     */
+    void writeTo(FileChannel channel) throws IOException;
+  }
+
+  private AtomicFileWriter() {
+  }
+
+  /**
+   * Replaces the file at the provided path with the provided contents.
+   * @param filePath the path of the file to be written.
+   * @param contents the contents of the file.
+   * @throws IOException if the file cannot be written or replaced; the previous file is
+   * left as it was.
+   * @throws FileNotFoundException if the directory of the file does not exist.
+   */
+
+  static void write(String filePath, Contents contents) throws IOException,
+      FileNotFoundException {
+    File target = new File(filePath).getAbsoluteFile();
+    File directory = target.getParentFile();
+    if (directory == null || !directory.isDirectory()) {
+      throw new FileNotFoundException(filePath + " (No such file or directory)");
+    }
+    File temporary = File.createTempFile(target.getName() + ".", TEMPORARY_SUFFIX, directory);
+    /* Once the target has been deleted the temporary file is the only copy left */
+    boolean keepTemporary = false;
+    try {
+      FileChannel channel = new FileOutputStream(temporary).getChannel();
+      try {
+        contents.writeTo(channel);
+        channel.force(true);
+      } finally {
+        channel.close();
+      }
+      if (temporary.renameTo(target)) {
+        keepTemporary = true;
+        return;
+      }
+      if (target.exists() && !target.delete()) {
+        throw new IOException("could not replace " + target);
+      }
+      keepTemporary = true;
+      if (!temporary.renameTo(target)) {
+        throw new IOException("could not rename " + temporary + " to " + target);
+      }
+    } finally {
+      if (!keepTemporary) {
+        temporary.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code BackgroundSaver} class saves copies of an Address Book's contacts on a single
+ * background writer thread.
+ * <p>
+ * A save is queued with the contacts as they were when it was requested. If a save of
+ * the same file is still waiting to start when another is requested, the waiting save is
+ * given the newer contacts and both requests share its future, so a burst of saves
+ * costs one write. Saves are written in the order they were first queued.
+ * <p>
+ * The writer thread is a daemon thread that exits after being idle for a while, so an
+ * Address Book that is no longer saving holds no thread. Saves still queued when the
+ * virtual machine exits are lost; files are replaced atomically, so the previous file
+ * is left intact.
+ * <p>
+ * {@code BackgroundSaver} is used internally by {@code AddressBook} and is thread-safe.
+ * @author Eric
+ * @see AddressBook#saveAddressBookToFileAsync
+ *
+ */
+
+final class BackgroundSaver {
+  private static final long IDLE_SECONDS = 30;
+
+  private final ThreadPoolExecutor writer;
+  /* Saves queued but not yet started, by the absolute path of the file to be saved */
+  private final Map<String, PendingSave> pending = new HashMap<String, PendingSave>();
+  private long completedSaves;
+  private long failedSaves;
+  private long coalescedSaves;
+  private long lastWriteNanos;
+  private long totalWriteNanos;
+
+  BackgroundSaver() {
+    writer = new ThreadPoolExecutor(1, 1, IDLE_SECONDS, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "AddressBook background saver");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    writer.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Queues a save of the provided contacts to a file in the format of
+   * {@code AddressBook.saveAddressBookToFile}.
+   * @param contacts a snapshot of the contacts to be saved, which must not be changed.
+   * @param filePath the path of the file to be saved.
+   * @return a future that completes once the contacts, or contacts from a later save of
+   * the same file, have been saved.
+   */
+
+  synchronized Future<Void> save(List<Contact> contacts, String filePath) {
+    String absolutePath = new File(filePath).getAbsolutePath();
+    PendingSave save = pending.get(absolutePath);
+    if (save != null) {
+      save.contacts = contacts;
+      coalescedSaves++;
+      return save.future;
+    }
+    save = new PendingSave(absolutePath, contacts);
+    pending.put(absolutePath, save);
+    writer.execute(save.future);
+    return save.future;
+  }
+
+  /**
+   * Returns the current statistics of the saver.
+   * @return a snapshot of the saver's statistics.
+   */
+
+  synchronized SaveStatistics getStatistics() {
+    return new SaveStatistics(pending.size(), completedSaves, failedSaves, coalescedSaves,
+        lastWriteNanos, totalWriteNanos);
+  }
+
+  private synchronized List<Contact> start(PendingSave save) {
+    pending.remove(save.filePath);
+    return save.contacts;
+  }
+
+  private synchronized void finish(long writeNanos, boolean succeeded) {
+    if (succeeded) {
+      completedSaves++;
+    } else {
+      failedSaves++;
+    }
+    lastWriteNanos = writeNanos;
+    totalWriteNanos += writeNanos;
+  }
+
+  /**
+   * A save waiting to be written, holding the latest contacts requested for its file.
+   */
+
+  private final class PendingSave implements Callable<Void> {
+    private final String filePath;
+    private final FutureTask<Void> future;
+    /* Guarded by the saver; replaced by later saves until the write starts */
+    private List<Contact> contacts;
+
+    private PendingSave(String filePath, List<Contact> contacts) {
+      this.filePath = filePath;
+      this.contacts = contacts;
+      this.future = new FutureTask<Void>(this);
+    }
+
+    @Override
+    public Void call() throws IOException {
+      List<Contact> contactsToSave = start(this);
+      long startTime = System.nanoTime();
+      boolean succeeded = false;
+      try {
+        AddressBook.writeContactsToFile(contactsToSave, filePath);
+        succeeded = true;
+      } finally {
+        finish(System.nanoTime() - startTime, succeeded);
+      }
+      return null;
+    }
+  }
+}
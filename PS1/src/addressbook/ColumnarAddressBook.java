@@ -0,0 +1,408 @@
+package addressbook;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The {@code ColumnarAddressBook} class is an address book that stores its contacts off
+ * the heap in columns, for address books of millions of contacts.
+ * <p>
+ * An {@code AddressBook} holds a {@code Contact} object for every contact, each with
+ * its own strings, phone number and postal address, and the garbage collector must
+ * trace all of them. {@code ColumnarAddressBook} instead keeps the fields of its
+ * contacts in direct byte buffers, one column per field: the phone numbers as packed
+ * longs and the text fields as UTF-8 bytes with an array of offsets. On the heap it
+ * holds only the columns' buffers and an {@code int} array of the contacts' rows in
+ * sorted order, so its footprint and the garbage collector's work do not grow with
+ * the number of objects a Contact is made of.
+ * <p>
+ * {@code ColumnarAddressBook} provides the same methods as {@code AddressBook} for
+ * adding, removing and searching contacts and for saving and reading snapshots.
+ * Contacts are kept in the same sorted order. A {@code Contact} is built only when one
+ * is returned: searches check each contact's columns in place and build the contacts
+ * that match. A new but equal {@code Contact} object is returned every time.
+ * <p>
+ * Removing a contact drops its row from the sorted order and leaves its bytes in the
+ * columns. Once the removed rows outnumber both the contacts and
+ * {@code COMPACTION_THRESHOLD}, the contacts are copied to new columns in sorted order
+ * and the old columns are released.
+ * <p>
+ * Methods in the {@code ColumnarAddressBook} class are not thread-safe.
+ * @see AddressBook
+ * @see Contact
+ * @author Eric
+ *
+ */
+
+public final class ColumnarAddressBook {
+  private static final int INITIAL_CAPACITY = 1024;
+  /* Contacts read from a snapshot are added this many at a time */
+  private static final int READ_CHUNK_SIZE = 4096;
+
+  /**
+   * The smallest number of removed rows the columns hold before they are compacted.
+   */
+  public static final int COMPACTION_THRESHOLD = 1024;
+
+  private ContactColumns columns;
+  /* The rows of the contacts in sorted order; rows not listed have been removed */
+  private int[] order;
+  private int size;
+  private final List<Contact> contactsView;
+
+  public ColumnarAddressBook() {
+    this.columns = new ContactColumns();
+    this.order = new int[INITIAL_CAPACITY];
+    this.contactsView = new ContactsView();
+  }
+
+  /**
+   * Takes a {@code Contact} object to be added to the Address Book.
+   * If the Contact already exists in the Address Book the method will return false.
+   * When the Contact is successfully added its fields are appended to the columns and
+   * its row is inserted in sorted order.
+   * <p>
+   * The Contact is located by a binary search that compares phone numbers from their
+   * column and builds a stored contact only when the phone numbers are equal.
+   * <p>
+   * {@code addContact} is not thread-safe.
+   * @param contact the {@code Contact} object to be added to the Address Book.
+   * @return true if the contact is successfully added; false otherwise.
+   * @throws NullPointerException if {@code Contact} is null.
+   */
+
+  public boolean addContact(Contact contact) {
+    if (contact == null) {
+      throw new NullPointerException("contact cannot be null");
+    }
+    int index = search(contact);
+    if (index >= 0) {
+      return false;
+    }
+    index = -(index + 1);
+    ensureCapacity(size + 1);
+    System.arraycopy(order, index, order, index + 1, size - index);
+    order[index] = columns.append(contact);
+    size++;
+    return true;
+  }
+
+  /**
+   * Takes a collection of {@code Contact} objects to be added to the Address Book in a
+   * single pass. Follows the same rules as {@code AddressBook.addContacts}: the new
+   * contacts are sorted once and merged with the existing contacts, and duplicates are
+   * rejected.
+   * <p>
+   * {@code addContacts} is not thread-safe.
+   * @param contacts the {@code Contact} objects to be added to the Address Book.
+   * @return a list of the contacts that were rejected as duplicates; empty if all
+   * contacts were added.
+   * @throws NullPointerException if contacts is null or contains a null element.
+   * @see AddressBook#addContacts
+   */
+
+  public List<Contact> addContacts(Collection<Contact> contacts) {
+    if (contacts == null) {
+      throw new NullPointerException("contacts cannot be null");
+    }
+    Contact[] newContacts = contacts.toArray(new Contact[contacts.size()]);
+    for (Contact contact: newContacts) {
+      if (contact == null) {
+        throw new NullPointerException("contact cannot be null");
+      }
+    }
+    Arrays.sort(newContacts);
+
+    List<Contact> rejected = new ArrayList<Contact>();
+    int accepted = 0;
+    for (Contact contact: newContacts) {
+      if ((accepted > 0 && newContacts[accepted - 1].equals(contact))
+          || search(contact) >= 0) {
+        rejected.add(contact);
+      } else {
+        newContacts[accepted++] = contact;
+      }
+    }
+    if (accepted == 0) {
+      return rejected;
+    }
+    ensureCapacity(size + accepted);
+    int[] rows = new int[accepted];
+    for (int j = 0; j < accepted; j++) {
+      rows[j] = columns.append(newContacts[j]);
+    }
+    if (size == 0 || columns.compare(order[size - 1], newContacts[0]) < 0) {
+      /* The new contacts all sort after the existing ones */
+      System.arraycopy(rows, 0, order, size, accepted);
+    } else {
+      /* Merge from the back, so each existing row is moved at most once and the rows
+       * before the first new contact are not moved at all */
+      int i = size - 1;
+      int j = accepted - 1;
+      for (int k = size + accepted - 1; j >= 0; k--) {
+        if (i >= 0 && columns.compare(order[i], newContacts[j]) > 0) {
+          order[k] = order[i--];
+        } else {
+          order[k] = rows[j--];
+        }
+      }
+    }
+    size += accepted;
+    return rejected;
+  }
+
+  /**
+   * Search for a provided string of characters in each property field for
+   * all contacts in the Address Book. Follows the same rules as
+   * {@code AddressBook.searchContactsList}.
+   * <p>
+   * Every contact is checked in place in the columns, without building it. Fields that
+   * are entirely ASCII are compared byte by byte; other fields are decoded to be
+   * compared. Only the contacts that match are built.
+   * @param searchString the string or substring of characters to be searched for
+   * within each contact's set of property fields.
+   * @return a list of contacts who match the search, in sorted order.
+   * @see AddressBook#searchContactsList
+   */
+
+  public List<Contact> searchContactsList(String searchString) {
+    if (searchString == null || searchString.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String lowerCaseSearchString = searchString.toLowerCase();
+    byte[] asciiSearchString = AsciiText.bytes(lowerCaseSearchString);
+    String number = AddressBook.searchNumber(searchString);
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    for (int i = 0; i < size; i++) {
+      if (columns.matches(order[i], lowerCaseSearchString, asciiSearchString, number)) {
+        matchingContacts.add(columns.get(order[i]));
+      }
+    }
+    return matchingContacts;
+  }
+
+  /**
+   * Removes the provided contact from the Address Book.
+   * <p>
+   * {@code removeContact} is not thread-safe.
+   * @param contact the contact to be removed.
+   * @return true if the contact is successfully removed; false otherwise.
+   * @throws NullPointerException if {@code Contact} is null.
+   */
+
+  public boolean removeContact(Contact contact) {
+    if (contact == null) {
+      throw new NullPointerException("contact cannot be null");
+    }
+    int index = search(contact);
+    if (index < 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  /**
+   * Removes contact from the Address Book at the provided index.
+   * <p>
+   * {@code removeContactAtIndex} is not thread-safe.
+   * @param index index in sorted order of the contact to be removed.
+   * @return the contact that was removed.
+   * @throws IndexOutOfBoundsException if contacts list is empty or index is not less
+   * than the number of contacts.
+   * @throws IllegalArgumentException if index is negative.
+   */
+
+  public Contact removeContactAtIndex(int index) {
+    if (size == 0) {
+      throw new IndexOutOfBoundsException("List of contacts is empty");
+    }
+    if (index < 0) {
+      throw new IllegalArgumentException();
+    }
+    if (index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    Contact removed = columns.get(order[index]);
+    removeAt(index);
+    return removed;
+  }
+
+  /**
+   * Saves the list of contacts in the Address Book to a binary snapshot file in the
+   * format of {@code AddressBook.saveAddressBookToSnapshot}. Each contact is built as
+   * it is written.
+   * <p>
+   * {@code saveAddressBookToSnapshot} is not thread-safe.
+   * @param filePath the absolute path where the snapshot is to be saved.
+   * @throws IOException if the method fails to save the file for any reason.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   * @see AddressBook#saveAddressBookToSnapshot
+   */
+
+  public void saveAddressBookToSnapshot(String filePath) throws IOException,
+      FileNotFoundException {
+    ContactsSnapshot.write(contactsView, filePath);
+  }
+
+  /**
+   * Reads an Address Book of contacts from a binary snapshot file saved by
+   * {@code saveAddressBookToSnapshot} or {@code AddressBook.saveAddressBookToSnapshot}.
+   * <p>
+   * The contacts are decoded and added a chunk at a time, so only one chunk of
+   * {@code Contact} objects is on the heap at once however large the snapshot is.
+   * Contacts that already exist in the Address Book are skipped. A journal kept
+   * alongside the snapshot by {@code AddressBook.enableJournal} is not replayed.
+   * <p>
+   * {@code readAddressBookFromSnapshot} is not thread-safe.
+   * @param filePath the absolute path where the snapshot is to be read.
+   * @throws IOException if the method fails to read the file for any reason, or if the
+   * file is not a snapshot of a supported version or is corrupt.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   */
+
+  public void readAddressBookFromSnapshot(String filePath) throws IOException,
+      FileNotFoundException {
+    FileChannel channel = new FileInputStream(filePath).getChannel();
+    try {
+      ContactsSnapshot.RecordReader reader = new ContactsSnapshot.RecordReader(channel);
+      int count = reader.readHeader();
+      List<Contact> chunk = new ArrayList<Contact>(Math.min(count, READ_CHUNK_SIZE));
+      for (int i = 0; i < count; i++) {
+        int length = reader.require(4).getInt();
+        ByteBuffer record = reader.require(length);
+        chunk.add(ContactsSnapshot.decode(record, length));
+        if (chunk.size() == READ_CHUNK_SIZE || i == count - 1) {
+          addContacts(chunk);
+          chunk.clear();
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException("corrupt snapshot", e);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Returns the number of bytes the Address Book has allocated off the heap for its
+   * columns, including the bytes of removed contacts not yet compacted and the space
+   * reserved for contacts yet to be added.
+   * @return the off-heap footprint of the Address Book in bytes.
+   */
+
+  public long getOffHeapBytes() {
+    return columns.capacity();
+  }
+
+  /**
+   * Builds a single string composed of each {@code toString} method for each
+   * contact in the Address Book.
+   * @return a string that includes all the string representations for each
+   * contact in the Address Book.
+   */
+
+  @Override
+  public String toString() {
+    StringBuilder contacts = new StringBuilder();
+    for (Contact contact: contactsView) {
+      contacts.append(contact.toString());
+    }
+    return contacts.toString();
+  }
+
+  /**
+   * Accessor method to get an unmodifiable list of the contacts in the Address Book.
+   * <p>
+   * The returned list builds each {@code Contact} from the columns when it is
+   * accessed; a new but equal {@code Contact} object is returned every time. The list
+   * reflects later changes to the Address Book.
+   * Attempting to modify the list will throw an UnsupportedOperationException.
+   * @return an unmodifiable list of contacts in the Address Book.
+   */
+
+  public List<Contact> getUnmodifiableContactsList() {
+    return contactsView;
+  }
+
+  /**
+   * Returns the index of the contact in sorted order, or {@code -(insertion point) - 1}
+   * if it is not in the Address Book, as {@code Collections.binarySearch} does.
+   */
+
+  private int search(Contact contact) {
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int result = columns.compare(order[middle], contact);
+      if (result < 0) {
+        low = middle + 1;
+      } else if (result > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void removeAt(int index) {
+    System.arraycopy(order, index + 1, order, index, size - index - 1);
+    size--;
+    int removedRows = columns.rows() - size;
+    if (removedRows > Math.max(COMPACTION_THRESHOLD, size)) {
+      compact();
+    }
+  }
+
+  /**
+   * Copies the rows of the contacts, in sorted order, to new columns, dropping the rows
+   * of removed contacts.
+   */
+
+  private void compact() {
+    ContactColumns compacted = new ContactColumns();
+    for (int i = 0; i < size; i++) {
+      order[i] = compacted.appendCopy(columns, order[i]);
+    }
+    columns = compacted;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > order.length) {
+      order = Arrays.copyOf(order, Math.max(capacity, 2 * order.length));
+    }
+  }
+
+  /**
+   * Unmodifiable list view over the rows of the contacts in sorted order.
+   */
+
+  private final class ContactsView extends AbstractList<Contact> implements RandomAccess {
+
+    @Override
+    public Contact get(int index) {
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      return columns.get(order[index]);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package addressbook;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The {@code ConcurrentAddressBook} class is a thread-safe address book that contains a
+ * sorted set of {@code Contact} objects, sorted by {@code Contact.compareTo}.
+ * <p>
+ * {@code ConcurrentAddressBook} provides the same methods as {@code AddressBook} and
+ * stores its contacts in a {@code ConcurrentSkipListSet}. Searches and reads never
+ * block and are never blocked by a writer; adding and removing a contact takes
+ * logarithmic time and does not stall readers.
+ * <p>
+ * Searches, saves and iteration are weakly consistent: they reflect the state of the
+ * address book at some point at or since they started, and may or may not include
+ * changes made while they run. They never throw {@code ConcurrentModificationException}.
+ * <p>
+ * {@code Contact} objects are immutable. Therefore, Contacts in the Address Book cannot be
+ * directly modified. In order to update a Contact, pass the Contact to the
+ * {@code Builder(Contact contact)} method.
+ * <p>
+ * Methods in the {@code ConcurrentAddressBook} class are thread-safe.
+ * @see AddressBook
+ * @see Contact
+ * @author Eric
+ *
+ */
+
+public class ConcurrentAddressBook {
+  private final ConcurrentSkipListSet<Contact> contacts;
+  /* Coalesces concurrent saves, keyed by the absolute path of the file saved. An entry
+   * is removed once no save of its file is running. */
+  private final ConcurrentMap<String, GroupCommit> saves;
+
+  public ConcurrentAddressBook() {
+    this.contacts = new ConcurrentSkipListSet<Contact>();
+    this.saves = new ConcurrentHashMap<String, GroupCommit>();
+  }
+
+  /**
+   * Takes a {@code Contact} object to be added to the Address Book.
+   * If the Contact already exists in the Address Book the method will return false.
+   * When the Contact is successfully added it will be inserted in sorted order.
+   * <p>
+   * {@code addContact} is thread-safe.
+   * @param contact the {@code Contact} object to be added to the Address Book.
+   * @return true if the contact is successfully added; false otherwise.
+   * @throws NullPointerException if {@code Contact} is null.
+   */
+
+  public boolean addContact(Contact contact) {
+    if (contact == null) {
+      throw new NullPointerException("contact cannot be null");
+    }
+    return contacts.add(contact);
+  }
+
+  /**
+   * Search for a provided string of characters in each property field for
+   * all contacts in the Address Book. Follows the same rules as
+   * {@code AddressBook.searchContactsList}.
+   * <p>
+   * {@code searchContactsList} is thread-safe and never blocks.
+   * @param searchString the string or substring of characters to be searched for
+   * within each contact's set of property fields.
+   * @return a list of contacts who match the search, in sorted order.
+   * @see AddressBook#searchContactsList
+   */
+
+  public List<Contact> searchContactsList(String searchString) {
+    if (searchString == null || searchString.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String lowerCaseSearchString = searchString.toLowerCase();
+    String number = AddressBook.searchNumber(searchString);
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    for (Contact contact: contacts) {
+      if (AddressBook.contactMatches(contact, lowerCaseSearchString, number)) {
+        matchingContacts.add(contact);
+      }
+    }
+    return matchingContacts;
+  }
+
+  /**
+   * Removes the provided contact from the Address Book.
+   * <p>
+   * {@code removeContact} is thread-safe.
+   * @param contact the contact to be removed.
+   * @return true if the contact is successfully removed; false otherwise.
+   * @throws NullPointerException if {@code Contact} is null.
+   */
+
+  public boolean removeContact(Contact contact) {
+    if (contact == null) {
+      throw new NullPointerException("contact cannot be null");
+    }
+    return contacts.remove(contact);
+  }
+
+  /**
+   * Removes contact from the Address Book at the provided index in sorted order.
+   * <p>
+   * Finding the contact at an index takes time linear in the index. If the contact
+   * found is removed by another thread before this method can remove it, the index is
+   * looked up again.
+   * <p>
+   * {@code removeContactAtIndex} is thread-safe.
+   * @param index index in sorted order of the contact to be removed.
+   * @return the contact that was removed.
+   * @throws IndexOutOfBoundsException if contacts list is empty or index is out of range.
+   * @throws IllegalArgumentException if index is negative.
+   */
+
+  public Contact removeContactAtIndex(int index) {
+    if (index < 0) {
+      throw new IllegalArgumentException();
+    }
+    while (true) {
+      if (contacts.isEmpty()) {
+        throw new IndexOutOfBoundsException("List of contacts is empty");
+      }
+      Iterator<Contact> iterator = contacts.iterator();
+      Contact contact = null;
+      for (int i = 0; i <= index; i++) {
+        if (!iterator.hasNext()) {
+          throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        contact = iterator.next();
+      }
+      if (contacts.remove(contact)) {
+        return contact;
+      }
+    }
+  }
+
+  /**
+   * Saves the list of contacts in Address Book to a file, in the same JSON format as
+   * {@code AddressBook.saveAddressBookToFileStreaming}.
+   * <p>
+   * <p>
+   * The file is replaced atomically, so a crash during the save leaves either the
+   * previous file or the new one. Saves of the same file by several threads at once are
+   * group committed: a save returns once a write that started after it was called has
+   * been forced to the disk, and one write covers every save waiting for it, so a burst
+   * of saves costs at most two writes.
+   * <p>
+   * {@code saveAddressBookToFile} is thread-safe; every change completed before the call
+   * is saved, and contacts added or removed while the file is being written may or may
+   * not be saved.
+   * @param filePath the absolute path where the list of contacts are to be saved.
+   * @throws IOException if the method fails to save the file for any reason, including
+   * the failure of a write by another thread that covered this save.
+   * @throws InterruptedIOException if the thread is interrupted while waiting for
+   * another thread's write.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   */
+
+  public void saveAddressBookToFile(String filePath) throws IOException,
+      FileNotFoundException {
+    final String absolutePath = new File(filePath).getAbsolutePath();
+    GroupCommit save;
+    while (true) {
+      save = saves.get(absolutePath);
+      if (save == null) {
+        GroupCommit newSave = new GroupCommit(absolutePath, new AtomicFileWriter.Contents() {
+          @Override
+          public void writeTo(FileChannel channel) throws IOException {
+            ContactsJsonStream.write(contacts, channel);
+          }
+        });
+        save = saves.putIfAbsent(absolutePath, newSave);
+        if (save == null) {
+          save = newSave;
+        }
+      }
+      if (save.join()) {
+        break;
+      }
+      /* Retired by the last thread to leave it; make way for a new one */
+      saves.remove(absolutePath, save);
+    }
+    try {
+      save.commit();
+    } finally {
+      if (save.leave()) {
+        saves.remove(absolutePath, save);
+      }
+    }
+  }
+
+  /**
+   * Reads an Address Book of contacts from the provided file, in the same JSON format
+   * as {@code AddressBook.readAddressBookFromFileStreaming}. Contacts that already exist
+   * in the Address Book are skipped.
+   * <p>
+   * {@code readAddressBookFromFile} is thread-safe; other threads may see the contacts
+   * read appear one at a time.
+   * @param filePath the absolute path where the list of contacts are to be read.
+   * @throws IOException if the method fails to read the file for any reason.
+   * @throws ParseException if the method fails to parse the data in the file.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   */
+
+  public void readAddressBookFromFile(String filePath) throws IOException, ParseException,
+      FileNotFoundException {
+    ContactsJsonStream.read(filePath, new ContactsJsonStream.RecordHandler() {
+      @Override
+      public void record(String name, String number, String email, String address,
+          String note) {
+        contacts.add(AddressBook.buildContact(name, number, email, address, note));
+      }
+    });
+  }
+
+  /**
+   * Accessor method to get an unmodifiable list of the current contacts in the Address Book.
+   * <p>
+   * Unlike {@code AddressBook.getUnmodifiableContactsList}, the returned list is a copy
+   * of the contacts at some point during the call, and does not change when the Address
+   * Book does. Attempting to modify the returned list will throw an
+   * UnsupportedOperationException.
+   * <p>
+   * {@code getUnmodifiableContactsList} is thread-safe.
+   * @return an unmodifiable list of contacts in the Address Book, in sorted order.
+   */
+
+  public List<Contact> getUnmodifiableContactsList() {
+    return Collections.unmodifiableList(new ArrayList<Contact>(contacts));
+  }
+
+  /**
+   * Builds a single string composed of each {@code toString} method for each
+   * contact in the Address Book.
+   * @return a string that includes all the string representations for each
+   * contact in the Address Book.
+   */
+
+  @Override
+  public String toString() {
+    StringBuilder contactsString = new StringBuilder();
+    for (Contact contact: contacts) {
+      contactsString.append(contact.toString());
+    }
+    return contactsString.toString();
+  }
+}
@@ -27,6 +27,28 @@ public final class Contact implements Comparable<Contact> {
   private final String note;
   private final PhoneNumber phoneNumber;
   private final PostalAddress postalAddress;
+
+  /* Derived values cached at build time. Contact is immutable so they never change */
+  private final String phoneNumberString;
+  private final long phoneNumberKey;
+  private final String lowerCaseName;
+  private final String lowerCaseEmail;
+  private final String lowerCasePostalAddress;
+  private final String lowerCaseNote;
+  private final int hashCode;
+
+  /**
+   * The value of {@code getPostalAddressSeparators} when the fields of the postal address
+   * are not known.
+   */
+  static final long UNKNOWN_SEPARATORS = -1L;
+
+  /* A phone number field is at most an int, so has at most ten digits */
+  private static final int MAXIMUM_FIELD_DIGITS = 10;
+  private static final long[] POWERS_OF_TEN = {
+    1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+    10000000000L
+  };
   
   /**
    * The {@code Builder} class is a static class that uses the Builder pattern to create a 
@@ -176,20 +198,72 @@ public final class Contact implements Comparable<Contact> {
   }
 		
   private Contact(Builder builder) {
-    name = builder.name;
-    email = builder.email;
-    phoneNumber = new PhoneNumber(builder.countryCode, builder.areaCode, 
-        builder.subscriberNumber);		
-    postalAddress = new PostalAddress(builder.number, builder.street, 
-        builder.city, builder.state, builder.zipcode, builder.country);
-    note = builder.note;		
+    this(builder.name, builder.email, builder.note,
+        new PhoneNumber(builder.countryCode, builder.areaCode, builder.subscriberNumber),
+        new PostalAddress(builder.number, builder.street, builder.city, builder.state,
+        builder.zipcode, builder.country));
+  }
+
+  private Contact(String name, String email, String note, PhoneNumber phoneNumber,
+      PostalAddress postalAddress) {
+    this.name = name;
+    this.email = email;
+    this.note = note;
+    this.phoneNumber = phoneNumber;
+    this.postalAddress = postalAddress;
+    this.phoneNumberString = phoneNumber.toString();
+    this.phoneNumberKey = phoneNumber.toKey();
+    this.lowerCaseName = name.toLowerCase();
+    this.lowerCaseEmail = email.toLowerCase();
+    this.lowerCasePostalAddress = postalAddress.toString().toLowerCase();
+    this.lowerCaseNote = note.toLowerCase();
+    this.hashCode = computeHashCode();
+  }
+
+  /**
+   * Creates a Contact directly from the fields of a Contact that was previously stored,
+   * without parsing the phone number or rebuilding the postal address. Used internally
+   * to load Contacts from a binary snapshot; the fields must have been taken from an
+   * existing Contact.
+   * @param name the contact's name
+   * @param countryCode the country code of the phone number
+   * @param areaCode the area code of the phone number
+   * @param subscriberNumber the subscriber number of the phone number
+   * @param email the contact's email address
+   * @param postalAddress the contact's postal address as returned by 
+   * {@code getPostalAddress}
+   * @param note the note about the contact
+   * @return the Contact with the provided fields
+   */
+
+  static Contact fromStoredFields(String name, short countryCode, short areaCode,
+      int subscriberNumber, String email, String postalAddress, String note) {
+    return fromStoredFields(name, countryCode, areaCode, subscriberNumber, email,
+        postalAddress, PostalAddress.findSeparators(postalAddress), note);
+  }
+
+  /**
+   * Creates a Contact directly from the fields of a Contact that was previously stored,
+   * including the positions of the separators between the fields of its postal address
+   * as returned by {@code getPostalAddressSeparators}.
+   * @see fromStoredFields(String, short, short, int, String, String, String)
+   */
+
+  static Contact fromStoredFields(String name, short countryCode, short areaCode,
+      int subscriberNumber, String email, String postalAddress,
+      long postalAddressSeparators, String note) {
+    return new Contact(name, email, note, 
+        new PhoneNumber(countryCode, areaCode, subscriberNumber),
+        new PostalAddress(postalAddress, postalAddressSeparators));
   }
   
   /**
    * Compare this Contact object with the specified Contact object for order. 
-   * The comparison is based on the value of each Contact's name. {@code compareTo} uses the 
-   * {@code String} classes compareTo method which compares two strings lexicographically. 
-   * Character case is taken into account. 
+   * The comparison is based on each Contact's phone number, then name, email and postal
+   * address. Phone numbers are ordered numerically by country code, then area code, then
+   * subscriber number. The other fields are compared with the {@code String} class's
+   * compareToIgnoreCase method, which compares two strings lexicographically ignoring
+   * character case. 
    * @param the Contact object to be compared with this one
    * @return  negative integer, zero, or a positive integer as this object is less than, equal to, 
    * or greater than the specified object.
@@ -198,23 +272,19 @@ public final class Contact implements Comparable<Contact> {
 		
   @Override
   public int compareTo(Contact contact) {
-	 if (getPhoneNumber().equals(contact.getPhoneNumber())) {
-		 if (name.equalsIgnoreCase(contact.getName())) {
-			 if (email.equalsIgnoreCase(contact.getEmail())) {
-			      if (getPostalAddress().equalsIgnoreCase(contact.getPostalAddress())) {
-			    	  return 0;
-			      } else {
-			    	  return getPostalAddress().compareToIgnoreCase(contact.getPostalAddress());
-			      }
-			 } else {
-				 return email.compareToIgnoreCase(contact.getEmail());
-			 }
-		 } else {
-			 return name.compareToIgnoreCase(contact.getName());
-		 }
-	 } else {
-		 return getPhoneNumber().compareTo(contact.getPhoneNumber());
-	 }
+    /* Phone numbers are compared as packed keys; no strings are built */
+    if (phoneNumberKey != contact.phoneNumberKey) {
+      return (phoneNumberKey < contact.phoneNumberKey) ? -1 : 1;
+    }
+    int result = name.compareToIgnoreCase(contact.name);
+    if (result != 0) {
+      return result;
+    }
+    result = email.compareToIgnoreCase(contact.email);
+    if (result != 0) {
+      return result;
+    }
+    return postalAddress.toString().compareToIgnoreCase(contact.postalAddress.toString());
   }
   
   /**
@@ -236,26 +306,30 @@ public final class Contact implements Comparable<Contact> {
       return false;
     }
     Contact contact = (Contact)o;
-    return getPhoneNumber().equals(contact.getPhoneNumber()) && 
+    return phoneNumberKey == contact.phoneNumberKey && 
     	name.equalsIgnoreCase(contact.name) && email.equalsIgnoreCase(contact.email) 
-    	&& getPostalAddress().equalsIgnoreCase(contact.getPostalAddress());
+    	&& postalAddress.toString().equalsIgnoreCase(contact.postalAddress.toString());
   }
   
   /**
    * Returns a hash code value for the Contact object. The hash code value is calculated
-   * using all Contact fields
+   * using all Contact fields. It is computed once, when the Contact is built.
    * @return a hash code value for this object
    * @see equals
    */
 	
   @Override
   public int hashCode() {
+    return hashCode;
+  }
+
+  private int computeHashCode() {
       int result = 17;
-      result = ((name.isEmpty()) ? result : 31 * result + name.toLowerCase().hashCode());
-      result = ((email.isEmpty()) ? result : 31 * result + email.toLowerCase().hashCode());
-      result = ((getPhoneNumber().isEmpty()) ? result : 31 * result + getPhoneNumber().hashCode());
-      String address = getPostalAddress();
-      result = ((address.isEmpty()) ? result : 31 * result + address.toLowerCase().hashCode()); 
+      result = ((name.isEmpty()) ? result : 31 * result + lowerCaseName.hashCode());
+      result = ((email.isEmpty()) ? result : 31 * result + lowerCaseEmail.hashCode());
+      result = 31 * result + (int) (phoneNumberKey ^ (phoneNumberKey >>> 32));
+      result = ((lowerCasePostalAddress.isEmpty()) ? result : 31 * result 
+          + lowerCasePostalAddress.hashCode()); 
       return result;
   }
   
@@ -295,9 +369,206 @@ public final class Contact implements Comparable<Contact> {
    */
   
   public String getPhoneNumber() {
-    return phoneNumber.toString();
+    /* String immutable and cached at build time. Don't need Defensive Copy */
+    return phoneNumberString;
   }
-  
+
+  /**
+   * Returns the Contact's name in lower case, cached when the Contact was built.
+   * Used internally for case-insensitive searches.
+   * @return the Contact's name in lower case.
+   */
+
+  String getLowerCaseName() {
+    return lowerCaseName;
+  }
+
+  /**
+   * Returns the Contact's email in lower case, cached when the Contact was built.
+   * Used internally for case-insensitive searches.
+   * @return the Contact's email in lower case.
+   */
+
+  String getLowerCaseEmail() {
+    return lowerCaseEmail;
+  }
+
+  /**
+   * Returns the Contact's postal address in lower case, cached when the Contact was built.
+   * Used internally for case-insensitive searches.
+   * @return the Contact's postal address in lower case.
+   */
+
+  String getLowerCasePostalAddress() {
+    return lowerCasePostalAddress;
+  }
+
+  /**
+   * Returns the note about the Contact in lower case, cached when the Contact was built.
+   * Used internally for case-insensitive searches.
+   * @return the note about the Contact in lower case.
+   */
+
+  String getLowerCaseNote() {
+    return lowerCaseNote;
+  }
+
+  /**
+   * Returns the Contact's phone number packed into a long: the country code in the high
+   * 16 bits, then the area code in the next 16 and the subscriber number in the low 32.
+   * Phone numbers are equal exactly when their keys are equal, and order numerically by
+   * country code, area code and subscriber number as their keys do. Used internally to
+   * compare, hash and search phone numbers without comparing strings.
+   * @return the packed key of the Contact's phone number.
+   */
+
+  long getPhoneNumberKey() {
+    return phoneNumberKey;
+  }
+
+  /**
+   * Returns true if the digits appear within one of the provided phone number fields as
+   * {@code getPhoneNumber} would write them. Used internally to search stored phone
+   * numbers without building a Contact.
+   * @param countryCode the country code of the phone number.
+   * @param areaCode the area code of the phone number.
+   * @param subscriberNumber the subscriber number of the phone number.
+   * @param digits the digits to look for; must not be empty.
+   * @return true if one of the phone number fields contains the digits.
+   */
+
+  static boolean phoneNumberContains(short countryCode, short areaCode,
+      int subscriberNumber, String digits) {
+    int length = digits.length();
+    if (length > MAXIMUM_FIELD_DIGITS) {
+      return false;
+    }
+    long value = 0;
+    for (int i = 0; i < length; i++) {
+      char c = digits.charAt(i);
+      if (c < '0' || c > '9') {
+        /* Other digits never appear in the phone number string */
+        return false;
+      }
+      value = value * 10 + (c - '0');
+    }
+    if (length == MAXIMUM_FIELD_DIGITS) {
+      /* Only a ten digit subscriber number can hold ten digits */
+      return subscriberNumber == value && subscriberNumber >= POWERS_OF_TEN[length - 1];
+    }
+    return fieldContains(countryCode, (int) value, length)
+        || fieldContains(areaCode, (int) value, length)
+        || fieldContains(subscriberNumber, (int) value, length);
+  }
+
+  /**
+   * Returns true if the decimal digits of the field contain the digits of the value,
+   * which are length digits long including any leading zeros, by sliding a window of
+   * that many digits from the right of the field for as long as the window lies within
+   * the field's digits.
+   */
+
+  private static boolean fieldContains(int field, int value, int length) {
+    int window = (int) POWERS_OF_TEN[length];
+    int lowest = (int) POWERS_OF_TEN[length - 1];
+    for (int remaining = field; remaining >= lowest; remaining /= 10) {
+      if (remaining % window == value) {
+        return true;
+      }
+    }
+    /* A field of 0 is written as the single digit 0 */
+    return field == 0 && length == 1 && value == 0;
+  }
+
+  /**
+   * Packs the fields of a phone number into the key returned by
+   * {@code getPhoneNumberKey}.
+   * @param countryCode the country code of the phone number.
+   * @param areaCode the area code of the phone number.
+   * @param subscriberNumber the subscriber number of the phone number.
+   * @return the packed key of the phone number.
+   */
+
+  static long packPhoneNumber(short countryCode, short areaCode, int subscriberNumber) {
+    return ((long) (countryCode & 0xFFFF) << 48) | ((long) (areaCode & 0xFFFF) << 32)
+        | (subscriberNumber & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Returns the city of the Contact's postal address. Used internally to index postal
+   * addresses.
+   * @return the city, or an empty string if it is not known.
+   */
+
+  String getCity() {
+    return postalAddress.field(1);
+  }
+
+  /**
+   * Returns the state of the Contact's postal address. Used internally to index postal
+   * addresses.
+   * @return the state, or an empty string if it is not known.
+   */
+
+  String getState() {
+    return postalAddress.field(2);
+  }
+
+  /**
+   * Returns the country of the Contact's postal address. Used internally to index postal
+   * addresses.
+   * @return the country, or an empty string if it is not known.
+   */
+
+  String getCountry() {
+    return postalAddress.field(3);
+  }
+
+  /**
+   * Returns the positions in {@code getPostalAddress} of the four spaces separating the
+   * building number, street, city, state and country, packed 16 bits each into a long
+   * with the first space in the high bits. The fields are recorded when the Contact is
+   * built; for a Contact created from a stored postal address without them, they are
+   * found only if the address has exactly four spaces. Used internally to store the
+   * fields in snapshots.
+   * @return the packed separator positions, or {@code UNKNOWN_SEPARATORS} if the fields
+   * are not known.
+   */
+
+  long getPostalAddressSeparators() {
+    return postalAddress.separators;
+  }
+
+  /**
+   * Returns the country code of the Contact's phone number. Used internally to index
+   * phone numbers without building their string representation.
+   * @return the country code of the Contact's phone number.
+   */
+
+  short getCountryCode() {
+    return phoneNumber.countryCode;
+  }
+
+  /**
+   * Returns the area code of the Contact's phone number. Used internally to index
+   * phone numbers without building their string representation.
+   * @return the area code of the Contact's phone number.
+   */
+
+  short getAreaCode() {
+    return phoneNumber.areaCode;
+  }
+
+  /**
+   * Returns the subscriber number of the Contact's phone number. Used internally to index
+   * phone numbers without building their string representation.
+   * @return the subscriber number of the Contact's phone number.
+   */
+
+  int getSubscriberNumber() {
+    return phoneNumber.subscriberNumber;
+  }
+
   public String getName() {
     /* String immutable. Don't need Defensive Copy */  
     return name;
@@ -336,11 +607,65 @@ public final class Contact implements Comparable<Contact> {
    */
   
   private static class PostalAddress {
+    private static final int SEPARATORS = 4;
+    private static final int MAXIMUM_SEPARATOR_POSITION = 0xFFFF;
     private String address;
+    /* Positions of the spaces between the fields of address, 16 bits each with the first
+       in the high bits, or UNKNOWN_SEPARATORS if the fields cannot be told apart */
+    private final long separators;
     
     private PostalAddress(String number, String street, String city,
         String state, String zipcode, String country) {
       address = buildAddress(number, street, city, state, zipcode, country);
+      int numberEnd = number.length();
+      int streetEnd = numberEnd + 1 + street.length();
+      int cityEnd = streetEnd + 1 + city.length();
+      int stateEnd = cityEnd + 1 + state.length();
+      separators = (stateEnd > MAXIMUM_SEPARATOR_POSITION) ? UNKNOWN_SEPARATORS
+          : ((long) numberEnd << 48) | ((long) streetEnd << 32) | ((long) cityEnd << 16)
+          | stateEnd;
+    }
+
+    private PostalAddress(String address, long separators) {
+      this.address = address;
+      this.separators = separators;
+    }
+
+    /**
+     * Finds the separators of an address whose fields were not recorded. The fields can
+     * only be told apart if none of them has a space, so the address has exactly four.
+     */
+
+    private static long findSeparators(String address) {
+      long separators = 0;
+      int count = 0;
+      for (int i = address.indexOf(' '); i >= 0; i = address.indexOf(' ', i + 1)) {
+        if (++count > SEPARATORS || i > MAXIMUM_SEPARATOR_POSITION) {
+          return UNKNOWN_SEPARATORS;
+        }
+        separators = (separators << 16) | i;
+      }
+      return (count == SEPARATORS) ? separators : UNKNOWN_SEPARATORS;
+    }
+
+    /**
+     * Returns the field between the separator before it, or the start of the address,
+     * and the separator after it, or the end of the address; empty if the fields are
+     * not known.
+     */
+
+    private String field(int separatorBefore) {
+      if (separators == UNKNOWN_SEPARATORS) {
+        return "";
+      }
+      int start = separatorPosition(separatorBefore) + 1;
+      int end = (separatorBefore + 1 < SEPARATORS)
+          ? separatorPosition(separatorBefore + 1) : address.length();
+      return address.substring(start, end);
+    }
+
+    private int separatorPosition(int separator) {
+      return (int) (separators >>> (16 * (SEPARATORS - 1 - separator))) & 0xFFFF;
     }
     
     private String buildAddress(String number, String street, String city,
@@ -398,6 +723,16 @@ public final class Contact implements Comparable<Contact> {
       this.areaCode = Short.valueOf(parsedAreaCode);
       this.subscriberNumber = Integer.valueOf(parsedSubscriberNumber);
     }
+
+    private PhoneNumber(short countryCode, short areaCode, int subscriberNumber) {
+      this.countryCode = countryCode;
+      this.areaCode = areaCode;
+      this.subscriberNumber = subscriberNumber;
+    }
+
+    private long toKey() {
+      return packPhoneNumber(countryCode, areaCode, subscriberNumber);
+    }
 	
     /**
      * Returns the Contact's phone number. The phone number is represented by 
@@ -0,0 +1,67 @@
+package addressbook;
+
+/**
+ * The {@code ContactChange} class represents one change to an {@code AddressBook}: a
+ * contact that was added or removed, and the version of the Address Book once it was.
+ * <p>
+ * Applying the changes returned by {@code AddressBook.getChangesSince} in order to a
+ * copy of the Address Book at the version passed brings the copy up to date.
+ * {@code ContactChange} objects are immutable.
+ * @author Eric
+ * @see AddressBook#getChangesSince
+ *
+ */
+
+public final class ContactChange {
+
+  /**
+   * The kinds of change made to an Address Book.
+   */
+
+  public enum Type {
+    ADDED,
+    REMOVED
+  }
+
+  private final Type type;
+  private final Contact contact;
+  private final long version;
+
+  ContactChange(Type type, Contact contact, long version) {
+    this.type = type;
+    this.contact = contact;
+    this.version = version;
+  }
+
+  /**
+   * Returns whether the contact was added or removed.
+   * @return the type of the change.
+   */
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the contact that was added or removed.
+   * @return the contact changed.
+   */
+
+  public Contact getContact() {
+    return contact;
+  }
+
+  /**
+   * Returns the version of the Address Book once the change was made.
+   * @return the version of the change.
+   */
+
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public String toString() {
+    return version + " " + type + " " + contact.getName();
+  }
+}
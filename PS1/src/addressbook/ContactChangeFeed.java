@@ -0,0 +1,78 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@code ContactChangeFeed} class holds the most recent changes to an Address Book in
+ * a ring buffer of fixed capacity, indexed by version.
+ * <p>
+ * The change of version {@code v} is held in slot {@code (v - 1) % capacity} until it
+ * is overwritten by the change of version {@code v + capacity}. Changes are held as a
+ * contact and a flag in two parallel arrays, so recording one allocates nothing;
+ * {@code ContactChange} objects are only built when changes are read.
+ * <p>
+ * {@code ContactChangeFeed} is used internally by {@code AddressBook} and is not
+ * thread-safe.
+ * @author Eric
+ * @see AddressBook#getChangesSince
+ *
+ */
+
+final class ContactChangeFeed {
+  private final Contact[] contacts;
+  private final boolean[] added;
+  private long version;
+
+  ContactChangeFeed(int capacity) {
+    this.contacts = new Contact[capacity];
+    this.added = new boolean[capacity];
+  }
+
+  /**
+   * Returns the version of the latest change recorded; 0 if there has been none.
+   */
+
+  long getVersion() {
+    return version;
+  }
+
+  /**
+   * Records a change, overwriting the oldest change held if the buffer is full.
+   * @param contact the contact added or removed.
+   * @param wasAdded true if the contact was added; false if it was removed.
+   * @return the version of the change.
+   */
+
+  long record(Contact contact, boolean wasAdded) {
+    int slot = (int) (version % contacts.length);
+    contacts[slot] = contact;
+    added[slot] = wasAdded;
+    return ++version;
+  }
+
+  /**
+   * Returns the changes made after the provided version, in version order.
+   * @param since the version to read changes after.
+   * @return the changes after the version, or null if some of them are no longer held.
+   * @throws IllegalArgumentException if the version is negative or later than the
+   * latest change.
+   */
+
+  List<ContactChange> changesSince(long since) {
+    if (since < 0 || since > version) {
+      throw new IllegalArgumentException("version " + since + " is not between 0 and "
+          + version);
+    }
+    if (version - since > contacts.length) {
+      return null;
+    }
+    List<ContactChange> changes = new ArrayList<ContactChange>((int) (version - since));
+    for (long v = since + 1; v <= version; v++) {
+      int slot = (int) ((v - 1) % contacts.length);
+      changes.add(new ContactChange(added[slot] ? ContactChange.Type.ADDED
+          : ContactChange.Type.REMOVED, contacts[slot], v));
+    }
+    return changes;
+  }
+}
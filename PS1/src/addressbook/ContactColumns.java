@@ -0,0 +1,288 @@
+package addressbook;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/**
+ * The {@code ContactColumns} class stores the fields of contacts off the heap, one
+ * column per field, in direct byte buffers.
+ * <p>
+ * Each contact is a row. The phone number of a row is held in a column of longs as its
+ * packed key, and the separators of its postal address in another. The name, email,
+ * postal address and note are each held in a byte column as UTF-8 bytes, with an offset
+ * column giving where the value of each row starts. A column of flags records whether a
+ * row's text is entirely ASCII. Rows are appended and never moved or removed; the
+ * columns are compacted by copying the rows still wanted to new columns.
+ * <p>
+ * None of this is seen by the garbage collector: however many rows are stored, the
+ * columns are a few small objects on the heap. A {@code Contact} is built only when a
+ * row is read with {@code get}, and a search checks a row against a search string in
+ * place, so only the contacts returned need to be built.
+ * <p>
+ * A column cannot hold more than 2GB, which limits the total length of each text field
+ * across all rows.
+ * <p>
+ * {@code ContactColumns} is used internally by {@code ColumnarAddressBook} and is not
+ * thread-safe.
+ * @author Eric
+ * @see ColumnarAddressBook
+ *
+ */
+
+final class ContactColumns {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int INITIAL_ROWS = 1024;
+  private static final int TEXT_FIELDS = 4;
+  private static final int NAME = 0;
+  private static final int EMAIL = 1;
+  private static final int POSTAL_ADDRESS = 2;
+  private static final int NOTE = 3;
+  private static final byte ASCII = 1;
+
+  private ByteBuffer phoneNumberKeys;
+  private ByteBuffer postalAddressSeparators;
+  private ByteBuffer flags;
+  private final ByteColumn[] text = new ByteColumn[TEXT_FIELDS];
+  private int rows;
+
+  ContactColumns() {
+    phoneNumberKeys = allocate(8 * INITIAL_ROWS);
+    postalAddressSeparators = allocate(8 * INITIAL_ROWS);
+    flags = allocate(INITIAL_ROWS);
+    for (int field = 0; field < TEXT_FIELDS; field++) {
+      text[field] = new ByteColumn();
+    }
+  }
+
+  /**
+   * Returns the number of rows appended.
+   */
+
+  int rows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of bytes allocated off the heap for the columns.
+   */
+
+  long capacity() {
+    long capacity = phoneNumberKeys.capacity() + postalAddressSeparators.capacity()
+        + flags.capacity();
+    for (ByteColumn column: text) {
+      capacity += column.capacity();
+    }
+    return capacity;
+  }
+
+  /**
+   * Appends a row holding the fields of the provided contact.
+   * @param contact the contact to be stored.
+   * @return the index of the new row.
+   */
+
+  int append(Contact contact) {
+    boolean ascii = true;
+    ascii &= text[NAME].append(contact.getName());
+    ascii &= text[EMAIL].append(contact.getEmail());
+    ascii &= text[POSTAL_ADDRESS].append(contact.getPostalAddress());
+    ascii &= text[NOTE].append(contact.getNote());
+    return appendFixed(contact.getPhoneNumberKey(), contact.getPostalAddressSeparators(),
+        ascii ? ASCII : 0);
+  }
+
+  /**
+   * Appends a copy of a row of other columns, copying its bytes without decoding them.
+   * @param source the columns holding the row.
+   * @param row the index of the row in the source columns.
+   * @return the index of the new row.
+   */
+
+  int appendCopy(ContactColumns source, int row) {
+    for (int field = 0; field < TEXT_FIELDS; field++) {
+      text[field].appendCopy(source.text[field], row);
+    }
+    return appendFixed(source.phoneNumberKey(row),
+        source.postalAddressSeparators.getLong(8 * row),
+        source.flags.get(row));
+  }
+
+  private int appendFixed(long phoneNumberKey, long separators, byte rowFlags) {
+    phoneNumberKeys = ensureCapacity(phoneNumberKeys, 8 * (rows + 1));
+    postalAddressSeparators = ensureCapacity(postalAddressSeparators, 8 * (rows + 1));
+    flags = ensureCapacity(flags, rows + 1);
+    phoneNumberKeys.putLong(8 * rows, phoneNumberKey);
+    postalAddressSeparators.putLong(8 * rows, separators);
+    flags.put(rows, rowFlags);
+    return rows++;
+  }
+
+  long phoneNumberKey(int row) {
+    return phoneNumberKeys.getLong(8 * row);
+  }
+
+  /**
+   * Builds the Contact stored in the row.
+   */
+
+  Contact get(int row) {
+    long key = phoneNumberKey(row);
+    return Contact.fromStoredFields(text[NAME].get(row), (short) (key >>> 48),
+        (short) (key >>> 32), (int) key, text[EMAIL].get(row),
+        text[POSTAL_ADDRESS].get(row), postalAddressSeparators.getLong(8 * row),
+        text[NOTE].get(row));
+  }
+
+  /**
+   * Returns the order of the row's contact relative to the provided contact, as
+   * {@code Contact.compareTo} would. Phone numbers are compared from the key column; the
+   * contact is only built when the phone numbers are equal.
+   */
+
+  int compare(int row, Contact contact) {
+    long key = phoneNumberKey(row);
+    long otherKey = contact.getPhoneNumberKey();
+    if (key != otherKey) {
+      return (key < otherKey) ? -1 : 1;
+    }
+    return get(row).compareTo(contact);
+  }
+
+  /**
+   * Checks a row against a search without building its {@code Contact}, following
+   * {@code AddressBook.contactMatches}.
+   * @param row the row to be checked.
+   * @param lowerCaseSearchString the lower case search string.
+   * @param asciiSearchString the bytes of the lower case search string if it is ASCII;
+   * null if it is not.
+   * @param number the digits of the search string if it is a phone number search;
+   * otherwise empty.
+   * @return true if the row's contact matches the search.
+   */
+
+  boolean matches(int row, String lowerCaseSearchString, byte[] asciiSearchString,
+      String number) {
+    long key = phoneNumberKey(row);
+    if (!number.isEmpty() && Contact.phoneNumberContains((short) (key >>> 48),
+        (short) (key >>> 32), (int) key, number)) {
+      return true;
+    }
+    if (AsciiText.LOWER_CASE_IS_SIMPLE && (flags.get(row) & ASCII) != 0) {
+      /* The lower case of ASCII text is ASCII, so it cannot hold other characters */
+      if (asciiSearchString == null) {
+        return false;
+      }
+      for (ByteColumn column: text) {
+        if (column.containsIgnoringAsciiCase(row, asciiSearchString)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    for (ByteColumn column: text) {
+      if (column.get(row).toLowerCase().contains(lowerCaseSearchString)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ByteBuffer allocate(int capacity) {
+    return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Returns the buffer, or a copy of it twice as large if it cannot hold the provided
+   * number of bytes.
+   */
+
+  private static ByteBuffer ensureCapacity(ByteBuffer buffer, long needed) {
+    if (needed <= buffer.capacity()) {
+      return buffer;
+    }
+    if (needed > Integer.MAX_VALUE) {
+      throw new IllegalStateException("column is full");
+    }
+    ByteBuffer larger = allocate((int) Math.min(Integer.MAX_VALUE,
+        Math.max(needed, 2L * buffer.capacity())));
+    ByteBuffer contents = buffer.duplicate();
+    contents.clear();
+    larger.put(contents);
+    larger.clear();
+    return larger;
+  }
+
+  /**
+   * A column of variable length values: their bytes end to end, and the offset of the
+   * start of each row's value, with one more offset giving the end of the last value.
+   */
+
+  private static final class ByteColumn {
+    private ByteBuffer bytes = allocate(16 * INITIAL_ROWS);
+    private ByteBuffer offsets = allocate(4 * (INITIAL_ROWS + 1));
+    private int length;
+    private int rows;
+
+    private long capacity() {
+      return bytes.capacity() + offsets.capacity();
+    }
+
+    /**
+     * Appends the UTF-8 bytes of the value as a new row. Returns true if the value is
+     * entirely ASCII.
+     */
+
+    private boolean append(String value) {
+      byte[] encoded = value.getBytes(UTF_8);
+      bytes = ensureCapacity(bytes, (long) length + encoded.length);
+      ByteBuffer target = bytes.duplicate();
+      target.position(length);
+      target.put(encoded);
+      endRow(length + encoded.length);
+      return encoded.length == value.length();
+    }
+
+    private void appendCopy(ByteColumn source, int row) {
+      int start = source.start(row);
+      int end = source.start(row + 1);
+      bytes = ensureCapacity(bytes, (long) length + (end - start));
+      ByteBuffer value = source.bytes.duplicate();
+      value.limit(end).position(start);
+      ByteBuffer target = bytes.duplicate();
+      target.position(length);
+      target.put(value);
+      endRow(length + (end - start));
+    }
+
+    private void endRow(int end) {
+      offsets = ensureCapacity(offsets, 4L * (rows + 2));
+      offsets.putInt(4 * (rows + 1), end);
+      length = end;
+      rows++;
+    }
+
+    private int start(int row) {
+      return offsets.getInt(4 * row);
+    }
+
+    private String get(int row) {
+      int start = start(row);
+      byte[] value = new byte[start(row + 1) - start];
+      ByteBuffer source = bytes.duplicate();
+      source.position(start);
+      source.get(value);
+      return new String(value, UTF_8);
+    }
+
+    /**
+     * Returns true if the row's ASCII value contains the lower case ASCII bytes, with
+     * the upper case letters of the value read as lower case.
+     */
+
+    private boolean containsIgnoringAsciiCase(int row, byte[] lowerCaseBytes) {
+      return AsciiText.containsIgnoringCase(bytes, start(row), start(row + 1),
+          lowerCaseBytes);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package addressbook;
+
+import java.util.Comparator;
+
+/**
+ * The {@code ContactRanking} class scores how well a Contact matches a search, for the
+ * ranked search of {@code AddressBook}.
+ * <p>
+ * A Contact matches a search as for {@code AddressBook.searchContactsList}, and also
+ * when the digits of a phone number search are its whole phone number: the country
+ * code, area code and subscriber number concatenated, as typed into a phone. The score
+ * is that of the best matching field: the whole phone number, an exact name, the start
+ * of the name, a whole phone number field or the start of one, the start of a word in
+ * the name, anywhere in the name, anywhere in a phone number field, the start of the
+ * email, anywhere in the email, anywhere in the postal address, and finally anywhere in
+ * the note.
+ * <p>
+ * A single phone number field is never an exact match: a country code of 1 is shared
+ * by many contacts, so it ranks below an exact name.
+ * <p>
+ * {@code ContactRanking} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook#searchTopContacts
+ *
+ */
+
+final class ContactRanking {
+  static final int NO_MATCH = 0;
+  static final int NOTE = 10;
+  static final int POSTAL_ADDRESS = 20;
+  static final int EMAIL = 30;
+  static final int EMAIL_PREFIX = 35;
+  static final int PHONE_PARTIAL = 40;
+  static final int NAME = 50;
+  static final int NAME_WORD_PREFIX = 60;
+  static final int PHONE_PREFIX = 70;
+  static final int NAME_PREFIX = 80;
+  static final int NAME_EXACT = 90;
+  static final int PHONE_EXACT = 100;
+
+  /**
+   * Orders scored contacts from the best match to the worst; contacts with equal scores
+   * are in the Address Book's sorted order.
+   */
+  static final Comparator<ScoredContact> BEST_FIRST = new Comparator<ScoredContact>() {
+    @Override
+    public int compare(ScoredContact first, ScoredContact second) {
+      if (first.score != second.score) {
+        return (first.score > second.score) ? -1 : 1;
+      }
+      return first.contact.compareTo(second.contact);
+    }
+  };
+
+  private ContactRanking() {
+  }
+
+  /**
+   * Returns the score of the best matching field of the contact for a search.
+   * @param contact the contact to be scored.
+   * @param lowerCaseSearchString the lower case search string.
+   * @param number the digits of a phone number search; empty if not a phone number search.
+   * @return the score of the contact; {@code NO_MATCH} if it does not match the search.
+   */
+
+  static int score(Contact contact, String lowerCaseSearchString, String number) {
+    int score = NO_MATCH;
+    if (!number.isEmpty()) {
+      String phoneNumber = contact.getPhoneNumber();
+      if (isWholeNumber(phoneNumber, number)) {
+        return PHONE_EXACT;
+      }
+      score = phoneScore(phoneNumber, number);
+    }
+    String name = contact.getLowerCaseName();
+    int nameIndex = name.indexOf(lowerCaseSearchString);
+    if (nameIndex == 0) {
+      return Math.max(score, (name.length() == lowerCaseSearchString.length())
+          ? NAME_EXACT : NAME_PREFIX);
+    }
+    if (nameIndex > 0) {
+      boolean wordPrefix = false;
+      for (int i = nameIndex; i >= 0 && !wordPrefix;
+          i = name.indexOf(lowerCaseSearchString, i + 1)) {
+        wordPrefix = name.charAt(i - 1) == ' ';
+      }
+      return Math.max(score, wordPrefix ? NAME_WORD_PREFIX : NAME);
+    }
+    if (score != NO_MATCH) {
+      return score;
+    }
+    int emailIndex = contact.getLowerCaseEmail().indexOf(lowerCaseSearchString);
+    if (emailIndex >= 0) {
+      return (emailIndex == 0) ? EMAIL_PREFIX : EMAIL;
+    }
+    if (contact.getLowerCasePostalAddress().contains(lowerCaseSearchString)) {
+      return POSTAL_ADDRESS;
+    }
+    if (contact.getLowerCaseNote().contains(lowerCaseSearchString)) {
+      return NOTE;
+    }
+    return NO_MATCH;
+  }
+
+  /**
+   * Returns true if the digits are those of the phone number's fields concatenated,
+   * comparing them without building the concatenated string.
+   */
+
+  private static boolean isWholeNumber(String phoneNumber, String number) {
+    int j = 0;
+    for (int i = 0; i < phoneNumber.length(); i++) {
+      char c = phoneNumber.charAt(i);
+      if (c != ' ') {
+        if (j == number.length() || number.charAt(j) != c) {
+          return false;
+        }
+        j++;
+      }
+    }
+    return j == number.length();
+  }
+
+  /**
+   * Scores the digits against the phone number's space separated fields without
+   * splitting it: a match at the start of a field, including a whole field, is a prefix.
+   */
+
+  private static int phoneScore(String phoneNumber, String number) {
+    int score = NO_MATCH;
+    for (int i = phoneNumber.indexOf(number); i >= 0; i = phoneNumber.indexOf(number, i + 1)) {
+      if (i == 0 || phoneNumber.charAt(i - 1) == ' ') {
+        return PHONE_PREFIX;
+      }
+      score = PHONE_PARTIAL;
+    }
+    return score;
+  }
+
+  /**
+   * A contact paired with its score for a search.
+   */
+
+  static final class ScoredContact {
+    final Contact contact;
+    final int score;
+
+    ScoredContact(Contact contact, int score) {
+      this.contact = contact;
+      this.score = score;
+    }
+  }
+}
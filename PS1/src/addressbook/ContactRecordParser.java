@@ -0,0 +1,182 @@
+package addressbook;
+
+/**
+ * The {@code ContactRecordParser} class builds a {@code Contact} from the string fields
+ * of a stored contact record, scanning the phone number and postal address one character
+ * at a time.
+ * <p>
+ * The phone number and postal address are split into fields on runs of spaces exactly as
+ * {@code split("[ ]+")} would split them: a leading space gives an empty first field and
+ * trailing spaces give no field. A phone number with other than three fields or a postal
+ * address with other than six is replaced by the default value, and each field is
+ * treated as by {@code Contact.Builder}: a blank field takes the default, and the digits
+ * of a phone number field are parsed as a number, which must fit its field.
+ * <p>
+ * Unlike splitting the fields and passing them to a {@code Contact.Builder}, no
+ * intermediate arrays or field strings are created and the phone number fields are
+ * parsed straight to their numeric form. The only strings built are the postal address
+ * and those made by the Contact itself.
+ * <p>
+ * {@code ContactRecordParser} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook#readAddressBookFromFile
+ *
+ */
+
+final class ContactRecordParser {
+  private static final int PHONE_NUMBER_FIELDS = 3;
+  private static final int POSTAL_ADDRESS_FIELDS = 6;
+  /* The zipcode is not kept in a Contact's postal address */
+  private static final int ZIPCODE_FIELD = 4;
+  private static final short DEFAULT_COUNTRY_CODE = 1;
+  private static final short DEFAULT_AREA_CODE = 0;
+  private static final int DEFAULT_SUBSCRIBER_NUMBER = 0;
+
+  private ContactRecordParser() {
+  }
+
+  /**
+   * Builds a Contact from the string fields of a stored contact record.
+   * @param name the contact's name; null is treated as empty.
+   * @param phoneNumber the phone number as three space separated fields.
+   * @param email the contact's email address; null is treated as empty.
+   * @param address the postal address as six space separated fields.
+   * @param note the note about the contact; null is treated as empty.
+   * @return the Contact with the provided fields.
+   * @throws NullPointerException if phoneNumber or address is null.
+   * @throws NumberFormatException if a phone number field that is not blank has no
+   * digits or does not fit its field.
+   */
+
+  static Contact parse(String name, String phoneNumber, String email, String address,
+      String note) {
+    String postalAddress = buildPostalAddress(address);
+    short countryCode = DEFAULT_COUNTRY_CODE;
+    short areaCode = DEFAULT_AREA_CODE;
+    int subscriberNumber = DEFAULT_SUBSCRIBER_NUMBER;
+    if (countFields(phoneNumber) == PHONE_NUMBER_FIELDS) {
+      int start = 0;
+      int end = fieldEnd(phoneNumber, start);
+      countryCode = (short) parseNumber(phoneNumber, start, end, Short.MAX_VALUE,
+          DEFAULT_COUNTRY_CODE);
+      start = fieldStart(phoneNumber, end);
+      end = fieldEnd(phoneNumber, start);
+      areaCode = (short) parseNumber(phoneNumber, start, end, Short.MAX_VALUE,
+          DEFAULT_AREA_CODE);
+      start = fieldStart(phoneNumber, end);
+      end = fieldEnd(phoneNumber, start);
+      subscriberNumber = (int) parseNumber(phoneNumber, start, end, Integer.MAX_VALUE,
+          DEFAULT_SUBSCRIBER_NUMBER);
+    }
+    return Contact.fromStoredFields((name == null) ? "" : name, countryCode, areaCode,
+        subscriberNumber, isBlank(email) ? "" : email, postalAddress,
+        isBlank(note) ? "" : note);
+  }
+
+  /**
+   * Returns the postal address as {@code Contact.Builder} would build it from the
+   * fields of the address: the fields other than the zipcode separated by single spaces,
+   * with blank fields left empty.
+   */
+
+  private static String buildPostalAddress(String address) {
+    boolean hasFields = countFields(address) == POSTAL_ADDRESS_FIELDS;
+    StringBuilder postalAddress = new StringBuilder(hasFields ? address.length() : 4);
+    int start = 0;
+    int end = fieldEnd(address, start);
+    for (int field = 0; field < POSTAL_ADDRESS_FIELDS; field++) {
+      if (field != ZIPCODE_FIELD) {
+        if (field > 0) {
+          postalAddress.append(' ');
+        }
+        if (hasFields && !isBlank(address, start, end)) {
+          postalAddress.append(address, start, end);
+        }
+      }
+      start = fieldStart(address, end);
+      end = fieldEnd(address, start);
+    }
+    return postalAddress.toString();
+  }
+
+  /**
+   * Returns the number of fields {@code split("[ ]+")} would split the string into.
+   */
+
+  private static int countFields(String string) {
+    if (string.isEmpty()) {
+      return 1;
+    }
+    int count = 0;
+    int start = 0;
+    while (start < string.length()) {
+      count++;
+      start = fieldStart(string, fieldEnd(string, start));
+    }
+    /* A leading space gives an empty first field, dropped if the string is only spaces */
+    return (count == 1 && string.charAt(0) == ' ') ? 0 : count;
+  }
+
+  private static int fieldEnd(String string, int start) {
+    int end = start;
+    while (end < string.length() && string.charAt(end) != ' ') {
+      end++;
+    }
+    return end;
+  }
+
+  private static int fieldStart(String string, int previousEnd) {
+    int start = previousEnd;
+    while (start < string.length() && string.charAt(start) == ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * Parses the digits of a phone number field, ignoring any other characters, as
+   * {@code Contact.Builder} does. A blank field takes the default value.
+   */
+
+  private static long parseNumber(String string, int start, int end, long maximum,
+      long defaultValue) {
+    if (isBlank(string, start, end)) {
+      return defaultValue;
+    }
+    long value = 0;
+    boolean hasDigits = false;
+    for (int i = start; i < end; i++) {
+      char c = string.charAt(i);
+      if (Character.isDigit(c)) {
+        hasDigits = true;
+        value = value * 10 + Character.digit(c, 10);
+        if (value > maximum) {
+          throw new NumberFormatException("Value out of range: \""
+              + string.substring(start, end) + "\"");
+        }
+      }
+    }
+    if (!hasDigits) {
+      throw new NumberFormatException("For input string: \""
+          + string.substring(start, end) + "\"");
+    }
+    return value;
+  }
+
+  /**
+   * Returns true if the string is null or would be empty once trimmed.
+   */
+
+  private static boolean isBlank(String string) {
+    return string == null || isBlank(string, 0, string.length());
+  }
+
+  private static boolean isBlank(String string, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (string.charAt(i) > ' ') {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,219 @@
+package addressbook;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+/**
+ * The {@code ContactsJournal} class is an append-only log of the changes made to an
+ * {@code AddressBook} since its last snapshot.
+ * <p>
+ * A journal starts with a header of two ints, the magic number and the format version.
+ * Each change follows as one byte giving the kind of change, add or remove, and the
+ * contact in the record format of {@code ContactsSnapshot}.
+ * <p>
+ * Replaying a journal applies each change in order. Adding a contact that is already
+ * present or removing one that is not has no effect, so replaying a journal on a
+ * snapshot that already includes some of its changes gives the same result. A record cut
+ * short by a crash while it was being appended is ignored.
+ * <p>
+ * Records are written to the operating system as they are appended, so they survive the
+ * process crashing, but they are not forced to the disk.
+ * <p>
+ * {@code ContactsJournal} is used internally by {@code AddressBook} and is not thread-safe.
+ * @author Eric
+ * @see AddressBook#enableJournal
+ *
+ */
+
+final class ContactsJournal {
+  static final int MAGIC = 0x41424A4C;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 2 * 4;
+  private static final byte ADD = 1;
+  private static final byte REMOVE = 2;
+
+  /**
+   * Receives each change as a journal is replayed.
+   */
+
+  interface ReplayHandler {
+
+    /**
+     * Called for a contact that was added.
+     */
+    void added(Contact contact);
+
+    /**
+     * Called for a contact that was removed.
+     */
+    void removed(Contact contact);
+  }
+
+  private final RandomAccessFile file;
+  private final FileChannel channel;
+  private int recordCount;
+
+  /**
+   * Creates an empty journal at the provided path, replacing any existing journal.
+   * @param filePath the path of the journal file.
+   * @throws IOException if the journal cannot be created.
+   * @throws FileNotFoundException if the file cannot be created.
+   */
+
+  ContactsJournal(String filePath) throws IOException, FileNotFoundException {
+    this.file = new RandomAccessFile(filePath, "rw");
+    this.channel = file.getChannel();
+    try {
+      truncate();
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Appends a change adding the provided contacts.
+   * @param contacts the contacts that were added.
+   * @throws IOException if the change cannot be written.
+   */
+
+  void appendAdded(List<Contact> contacts) throws IOException {
+    append(ADD, contacts);
+  }
+
+  /**
+   * Appends a change removing the provided contacts.
+   * @param contacts the contacts that were removed.
+   * @throws IOException if the change cannot be written.
+   */
+
+  void appendRemoved(List<Contact> contacts) throws IOException {
+    append(REMOVE, contacts);
+  }
+
+  /**
+   * Returns the number of changes appended since the journal was created or truncated.
+   * @return the number of changes in the journal.
+   */
+
+  int getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Discards every change in the journal. Called once the changes are included in a
+   * snapshot. The header is rewritten before the records are cut off, so a failure
+   * leaves either the whole journal or an empty one, both of which replay correctly
+   * over the snapshot.
+   * @throws IOException if the journal cannot be truncated.
+   */
+
+  void truncate() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(VERSION).flip();
+    channel.write(header, 0);
+    channel.truncate(HEADER_SIZE);
+    channel.position(HEADER_SIZE);
+    recordCount = 0;
+  }
+
+  /**
+   * Closes the journal file.
+   * @throws IOException if the file cannot be closed.
+   */
+
+  void close() throws IOException {
+    file.close();
+  }
+
+  private void append(byte change, List<Contact> contacts) throws IOException {
+    byte[][] records = new byte[contacts.size()][];
+    int length = 0;
+    for (int i = 0; i < records.length; i++) {
+      records[i] = ContactsSnapshot.encode(contacts.get(i));
+      length += 1 + records[i].length;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    for (byte[] record: records) {
+      buffer.put(change).put(record);
+    }
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    recordCount += records.length;
+  }
+
+  /**
+   * Returns the path of the journal kept alongside the snapshot at the provided path.
+   * @param snapshotPath the path of the snapshot.
+   * @return the path of the snapshot's journal.
+   */
+
+  static String journalPath(String snapshotPath) {
+    return snapshotPath + ".journal";
+  }
+
+  /**
+   * Replays the changes of the journal at the provided path, if there is one.
+   * @param filePath the path of the journal file.
+   * @param handler the handler to receive each change.
+   * @throws IOException if the journal exists but cannot be read or is not a journal.
+   */
+
+  static void replay(String filePath, ReplayHandler handler) throws IOException {
+    File journalFile = new File(filePath);
+    if (!journalFile.exists()) {
+      return;
+    }
+    if (journalFile.length() > Integer.MAX_VALUE) {
+      throw new IOException("journal is too large to be replayed");
+    }
+    FileChannel channel = new FileInputStream(journalFile).getChannel();
+    ByteBuffer buffer;
+    try {
+      buffer = ByteBuffer.allocate((int) channel.size());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        /* Keep reading until the buffer is full */
+      }
+      buffer.flip();
+    } finally {
+      channel.close();
+    }
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IOException("not an address book journal");
+    }
+    int version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported journal version " + version);
+    }
+    while (buffer.remaining() >= 1 + 4) {
+      byte change = buffer.get();
+      int length = buffer.getInt();
+      if (length < 0 || buffer.remaining() < length) {
+        /* Cut short by a crash while it was being appended */
+        return;
+      }
+      Contact contact;
+      try {
+        contact = ContactsSnapshot.decode(buffer, length);
+      } catch (BufferUnderflowException e) {
+        throw new IOException("corrupt journal record", e);
+      }
+      if (change == ADD) {
+        handler.added(contact);
+      } else if (change == REMOVE) {
+        handler.removed(contact);
+      } else {
+        throw new IOException("corrupt journal record");
+      }
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package addressbook;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The {@code ContactsJsonStream} class writes and reads the JSON "Contacts List" format
+ * used by {@code AddressBook} one contact at a time.
+ * <p>
+ * Writing emits each contact's JSON object directly to a buffered writer over the file's
+ * channel instead of building the whole document in memory first. Reading drives the
+ * json-simple parser with a {@code ContentHandler}, so only the fields of the contact
+ * currently being parsed are held, and hands each complete record to a
+ * {@code RecordHandler}.
+ * <p>
+ * Files are written and read as UTF-8.
+ * <p>
+ * {@code ContactsJsonStream} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook
+ *
+ */
+
+final class ContactsJsonStream {
+  static final String CONTACTS_LIST = "Contacts List";
+  private static final String CHARSET = "UTF-8";
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Receives the string fields of each contact record as it is read from a file.
+   */
+
+  interface RecordHandler {
+
+    /**
+     * Called once for every contact record, in file order. A field missing from the
+     * record is null.
+     */
+    void record(String name, String number, String email, String address, String note);
+  }
+
+  private ContactsJsonStream() {
+  }
+
+  /**
+   * Writes the provided contacts to a file in the "Contacts List" format. The file is
+   * replaced atomically by {@code AtomicFileWriter}.
+   * @param contacts the contacts to be written, in the order they are to be stored.
+   * @param filePath the path of the file to be written.
+   * @throws IOException if the file cannot be written.
+   * @throws FileNotFoundException if the file cannot be created.
+   */
+
+  static void write(final Iterable<Contact> contacts, String filePath) throws IOException,
+      FileNotFoundException {
+    AtomicFileWriter.write(filePath, new AtomicFileWriter.Contents() {
+      @Override
+      public void writeTo(FileChannel channel) throws IOException {
+        write(contacts, channel);
+      }
+    });
+  }
+
+  /**
+   * Writes the provided contacts to a channel in the "Contacts List" format, leaving the
+   * channel open.
+   * @param contacts the contacts to be written, in the order they are to be stored.
+   * @param channel the channel of the file to be written.
+   * @throws IOException if the contacts cannot be written.
+   */
+
+  static void write(Iterable<Contact> contacts, FileChannel channel) throws IOException {
+    Writer writer = new BufferedWriter(Channels.newWriter(channel, CHARSET), BUFFER_SIZE);
+    writer.write("{");
+    writeString(writer, CONTACTS_LIST);
+    writer.write(":[");
+    boolean first = true;
+    for (Contact contact: contacts) {
+      if (!first) {
+        writer.write(",");
+      }
+      first = false;
+      writer.write("{");
+      writeField(writer, "name", contact.getName());
+      writer.write(",");
+      writeField(writer, "number", contact.getPhoneNumber());
+      writer.write(",");
+      writeField(writer, "email", contact.getEmail());
+      writer.write(",");
+      writeField(writer, "address", contact.getPostalAddress());
+      writer.write(",");
+      writeField(writer, "note", contact.getNote());
+      writer.write("}");
+    }
+    writer.write("]}");
+    writer.flush();
+  }
+
+  /**
+   * Reads the contact records of a file in the "Contacts List" format, passing each
+   * record to the handler as soon as it has been parsed.
+   * @param filePath the path of the file to be read.
+   * @param handler the handler to receive each record.
+   * @throws IOException if the file cannot be read.
+   * @throws ParseException if the file is not valid JSON.
+   * @throws FileNotFoundException if the file does not exist.
+   */
+
+  static void read(String filePath, RecordHandler handler) throws IOException,
+      ParseException, FileNotFoundException {
+    FileChannel channel = new FileInputStream(filePath).getChannel();
+    parse(new BufferedReader(Channels.newReader(channel, CHARSET), BUFFER_SIZE), handler);
+  }
+
+  /**
+   * Reads the contact records of a file in the "Contacts List" format encoded in the
+   * provided charset, passing each record to the handler as soon as it has been parsed.
+   * As with a {@code FileReader}, malformed input is replaced rather than reported.
+   * @param filePath the path of the file to be read.
+   * @param charset the charset the file is encoded in.
+   * @param handler the handler to receive each record.
+   * @throws IOException if the file cannot be read.
+   * @throws ParseException if the file is not valid JSON.
+   * @throws FileNotFoundException if the file does not exist.
+   */
+
+  static void read(String filePath, Charset charset, RecordHandler handler)
+      throws IOException, ParseException, FileNotFoundException {
+    Reader reader = new InputStreamReader(new FileInputStream(filePath), charset);
+    parse(new BufferedReader(reader, BUFFER_SIZE), handler);
+  }
+
+  private static void parse(Reader reader, RecordHandler handler) throws IOException,
+      ParseException {
+    try {
+      new JSONParser().parse(reader, new RecordParser(handler));
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static void writeField(Writer writer, String key, String value)
+      throws IOException {
+    writeString(writer, key);
+    writer.write(":");
+    writeString(writer, value);
+  }
+
+  private static void writeString(Writer writer, String value) throws IOException {
+    writer.write("\"");
+    writer.write(JSONValue.escape(value));
+    writer.write("\"");
+  }
+
+  /**
+   * Tracks the parser's position in the document and collects the fields of each object
+   * of the top level "Contacts List" array. Values nested deeper than a record's fields
+   * are ignored.
+   */
+
+  private static final class RecordParser implements ContentHandler {
+    private static final int LIST_DEPTH = 2;
+    private static final int RECORD_DEPTH = 3;
+
+    private final RecordHandler handler;
+    private int depth;
+    private String topLevelKey;
+    private boolean inContactsList;
+    private String fieldKey;
+    private String name;
+    private String number;
+    private String email;
+    private String address;
+    private String note;
+
+    private RecordParser(RecordHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void startJSON() {
+      depth = 0;
+      inContactsList = false;
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+      depth++;
+      if (inContactsList && depth == RECORD_DEPTH) {
+        name = null;
+        number = null;
+        email = null;
+        address = null;
+        note = null;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean endObject() {
+      if (inContactsList && depth == RECORD_DEPTH) {
+        handler.record(name, number, email, address, note);
+      }
+      depth--;
+      return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+      if (depth == 1) {
+        topLevelKey = key;
+      } else if (depth == RECORD_DEPTH) {
+        fieldKey = key;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+      return true;
+    }
+
+    @Override
+    public boolean startArray() {
+      depth++;
+      if (depth == LIST_DEPTH && CONTACTS_LIST.equals(topLevelKey)) {
+        inContactsList = true;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean endArray() {
+      if (depth == LIST_DEPTH) {
+        inContactsList = false;
+      }
+      depth--;
+      return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+      if (!inContactsList || depth != RECORD_DEPTH) {
+        return true;
+      }
+      String string = (value == null) ? null : value.toString();
+      if ("name".equals(fieldKey)) {
+        name = string;
+      } else if ("number".equals(fieldKey)) {
+        number = string;
+      } else if ("email".equals(fieldKey)) {
+        email = string;
+      } else if ("address".equals(fieldKey)) {
+        address = string;
+      } else if ("note".equals(fieldKey)) {
+        note = string;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package addressbook;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code ContactsPage} class represents one page of the results of a paginated
+ * search of an {@code AddressBook}.
+ * <p>
+ * A page holds up to the requested number of matching contacts in the Address Book's
+ * sorted order. To fetch the next page, pass the page's cursor to
+ * {@code AddressBook.searchContactsPage} along with the same search string. The cursor
+ * is the last contact on the page, so paging continues correctly even if contacts are
+ * added or removed between requests.
+ * <p>
+ * {@code ContactsPage} objects are immutable.
+ * @author Eric
+ * @see AddressBook#searchContactsPage
+ *
+ */
+
+public final class ContactsPage {
+  private final List<Contact> contacts;
+  private final boolean hasMore;
+
+  ContactsPage(List<Contact> contacts, boolean hasMore) {
+    this.contacts = Collections.unmodifiableList(contacts);
+    this.hasMore = hasMore;
+  }
+
+  /**
+   * Returns the contacts on this page in sorted order.
+   * @return an unmodifiable list of the contacts on this page.
+   */
+
+  public List<Contact> getContacts() {
+    return contacts;
+  }
+
+  /**
+   * Returns true if there were more matching contacts after this page when it was
+   * created.
+   * @return true if there is a next page; false otherwise.
+   */
+
+  public boolean hasMore() {
+    return hasMore;
+  }
+
+  /**
+   * Returns the cursor to pass to {@code AddressBook.searchContactsPage} to fetch the
+   * page after this one.
+   * @return the last contact on this page, or null if this page is empty.
+   */
+
+  public Contact getCursor() {
+    return contacts.isEmpty() ? null : contacts.get(contacts.size() - 1);
+  }
+}
@@ -0,0 +1,355 @@
+package addressbook;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code ContactsSnapshot} class writes and reads a versioned binary snapshot of a
+ * sorted list of contacts.
+ * <p>
+ * A snapshot starts with a header of three ints: the magic number, the format version
+ * and the number of contacts. Each contact follows as a record made of an int giving
+ * the length of the rest of the record, the phone number's country code, area code and
+ * subscriber number in their native short, short and int form, and then the name,
+ * email, postal address and note, each as an int length followed by its UTF-8 bytes.
+ * <p>
+ * From version 2 the records are followed by an offset index: one long per contact
+ * giving the file position of its record, so that a record can be found without
+ * reading the ones before it. Version 1 snapshots have no offset index and can still
+ * be read.
+ * <p>
+ * From version 3 the contacts are in the order of {@code Contact.compareTo}, which
+ * compares phone numbers numerically; earlier versions compared them as strings.
+ * <p>
+ * From version 4 each record ends with a long giving the positions of the spaces that
+ * separate the fields of the postal address, as returned by
+ * {@code Contact.getPostalAddressSeparators}, so that the city, state and country of an
+ * address whose fields contain spaces survive being stored. Records are read up to
+ * their length, so a record without the separators is read as before.
+ * <p>
+ * Contacts are stored in the order they are written, which for an {@code AddressBook}
+ * is its sorted order, so loading a snapshot of version 3 or later does not need to
+ * sort. The contacts of an older snapshot are sorted again when read, and
+ * {@code MappedAddressBook}, which relies on the stored order, does not open them.
+ * <p>
+ * Snapshots are written and read with a {@code FileChannel}.
+ * {@code ContactsSnapshot} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook
+ *
+ */
+
+final class ContactsSnapshot {
+  static final int MAGIC = 0x41424B53;
+  static final int VERSION = 4;
+  static final int SORTED_VERSION = 3;
+  static final int UNINDEXED_VERSION = 1;
+  static final int HEADER_SIZE = 3 * 4;
+  /* A record's length, phone number and four empty string lengths */
+  static final int MINIMUM_RECORD_SIZE = 4 + 2 + 2 + 4 + 4 * 4;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private ContactsSnapshot() {
+  }
+
+  /**
+   * Writes the provided contacts to a snapshot file. The file is replaced atomically by
+   * {@code AtomicFileWriter}.
+   * @param contacts the contacts to be written, in sorted order.
+   * @param filePath the path of the snapshot file to be written.
+   * @throws IOException if the snapshot cannot be written.
+   * @throws FileNotFoundException if the file cannot be created.
+   */
+
+  static void write(final List<Contact> contacts, String filePath) throws IOException,
+      FileNotFoundException {
+    AtomicFileWriter.write(filePath, new AtomicFileWriter.Contents() {
+      @Override
+      public void writeTo(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(contacts.size());
+        long[] offsets = new long[contacts.size()];
+        long position = HEADER_SIZE;
+        int i = 0;
+        for (Contact contact: contacts) {
+          byte[] record = encode(contact);
+          offsets[i++] = position;
+          position += record.length;
+          if (buffer.remaining() < record.length) {
+            flush(channel, buffer);
+          }
+          if (buffer.remaining() < record.length) {
+            writeFully(channel, ByteBuffer.wrap(record));
+          } else {
+            buffer.put(record);
+          }
+        }
+        for (long offset: offsets) {
+          if (buffer.remaining() < 8) {
+            flush(channel, buffer);
+          }
+          buffer.putLong(offset);
+        }
+        flush(channel, buffer);
+      }
+    });
+  }
+
+  /**
+   * Reads the contacts of a snapshot file.
+   * @param filePath the path of the snapshot file to be read.
+   * @return the contacts in sorted order, which is the order they were written unless
+   * the snapshot is older than {@code SORTED_VERSION}.
+   * @throws IOException if the file cannot be read or is not a valid snapshot, including
+   * a header claiming more contacts than the file can hold or a truncated record.
+   * @throws FileNotFoundException if the file does not exist.
+   */
+
+  static List<Contact> read(String filePath) throws IOException, FileNotFoundException {
+    FileChannel channel = new FileInputStream(filePath).getChannel();
+    try {
+      RecordReader reader = new RecordReader(channel);
+      int count = reader.readHeader();
+      List<Contact> contacts = new ArrayList<Contact>(count);
+      for (int i = 0; i < count; i++) {
+        int length = reader.require(4).getInt();
+        contacts.add(decode(reader.require(length), length));
+      }
+      if (reader.getVersion() < SORTED_VERSION) {
+        Collections.sort(contacts);
+      }
+      return contacts;
+    } catch (BufferUnderflowException e) {
+      throw new IOException("corrupt snapshot", e);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Reads and checks the snapshot header at the buffer's position.
+   * @return the number of contacts in the snapshot.
+   * @throws IOException if the header is not that of a supported snapshot.
+   */
+
+  static int readHeader(ByteBuffer buffer) throws IOException {
+    return readHeader(buffer, UNINDEXED_VERSION);
+  }
+
+  /**
+   * Reads and checks the snapshot header at the buffer's position, requiring at least
+   * the provided format version.
+   * @return the number of contacts in the snapshot.
+   * @throws IOException if the header is not that of a supported snapshot.
+   */
+
+  static int readHeader(ByteBuffer buffer, int minimumVersion) throws IOException {
+    if (buffer.getInt() != MAGIC) {
+      throw new IOException("not an address book snapshot");
+    }
+    int version = buffer.getInt();
+    if (version < minimumVersion || version > VERSION) {
+      throw new IOException("unsupported snapshot version " + version);
+    }
+    int count = buffer.getInt();
+    if (count < 0) {
+      throw new IOException("corrupt snapshot header");
+    }
+    return count;
+  }
+
+  /**
+   * Encodes a contact as a complete record, including its leading length.
+   * @param contact the contact to be encoded.
+   * @return the bytes of the record.
+   */
+
+  static byte[] encode(Contact contact) {
+    byte[] name = contact.getName().getBytes(UTF_8);
+    byte[] email = contact.getEmail().getBytes(UTF_8);
+    byte[] address = contact.getPostalAddress().getBytes(UTF_8);
+    byte[] note = contact.getNote().getBytes(UTF_8);
+    int length = 2 + 2 + 4 + 4 * 4 + name.length + email.length + address.length
+        + note.length + 8;
+    ByteBuffer record = ByteBuffer.allocate(4 + length);
+    record.putInt(length);
+    record.putShort(contact.getCountryCode());
+    record.putShort(contact.getAreaCode());
+    record.putInt(contact.getSubscriberNumber());
+    putBytes(record, name);
+    putBytes(record, email);
+    putBytes(record, address);
+    putBytes(record, note);
+    record.putLong(contact.getPostalAddressSeparators());
+    return record.array();
+  }
+
+  /**
+   * Decodes a contact from a record at the buffer's position, following its leading
+   * length. The buffer's position is left after the record.
+   * @param buffer a buffer holding the whole record.
+   * @param length the length of the record, not counting its leading length.
+   * @return the decoded contact.
+   * @throws BufferUnderflowException if the buffer does not hold the whole record, a
+   * field runs past the end of the record or a phone number field is negative.
+   */
+
+  static Contact decode(ByteBuffer buffer, int length) {
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    int end = buffer.position() + length;
+    short countryCode = buffer.getShort();
+    short areaCode = buffer.getShort();
+    int subscriberNumber = buffer.getInt();
+    /* Contacts never hold negative phone number fields; the record is corrupt */
+    if (countryCode < 0 || areaCode < 0 || subscriberNumber < 0) {
+      throw new BufferUnderflowException();
+    }
+    String name = getString(buffer);
+    String email = getString(buffer);
+    String address = getString(buffer);
+    String note = getString(buffer);
+    if (buffer.position() > end) {
+      throw new BufferUnderflowException();
+    }
+    Contact contact;
+    if (end - buffer.position() >= 8) {
+      contact = Contact.fromStoredFields(name, countryCode, areaCode, subscriberNumber,
+          email, address, buffer.getLong(), note);
+    } else {
+      contact = Contact.fromStoredFields(name, countryCode, areaCode, subscriberNumber,
+          email, address, note);
+    }
+    buffer.position(end);
+    return contact;
+  }
+
+  /**
+   * Decodes a length-prefixed UTF-8 string at the buffer's position.
+   * @param buffer a buffer holding the whole string.
+   * @return the decoded string.
+   * @throws BufferUnderflowException if the buffer does not hold the whole string.
+   */
+
+  static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+    String string;
+    if (buffer.hasArray()) {
+      string = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+          UTF_8);
+      buffer.position(buffer.position() + length);
+    } else {
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      string = new String(bytes, UTF_8);
+    }
+    return string;
+  }
+
+  private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    writeFully(channel, buffer);
+    buffer.clear();
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /**
+   * Reads a file channel through a buffer that is refilled as records are consumed.
+   */
+
+  static final class RecordReader {
+    private final FileChannel channel;
+    private ByteBuffer buffer;
+    private int version;
+
+    RecordReader(FileChannel channel) {
+      this.channel = channel;
+      this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+      this.buffer.flip();
+    }
+
+    /**
+     * Reads and checks the snapshot header at the start of the file.
+     * @return the number of contacts in the snapshot.
+     * @throws IOException if the header is not that of a supported snapshot or claims
+     * more contacts than the file can hold.
+     */
+
+    int readHeader() throws IOException {
+      ByteBuffer header = require(HEADER_SIZE);
+      version = header.getInt(header.position() + 4);
+      int count = ContactsSnapshot.readHeader(header);
+      if (count > (channel.size() - HEADER_SIZE) / MINIMUM_RECORD_SIZE) {
+        throw new IOException("corrupt snapshot header");
+      }
+      return count;
+    }
+
+    /**
+     * Returns the format version of the snapshot, once its header has been read.
+     */
+
+    int getVersion() {
+      return version;
+    }
+
+    /**
+     * Makes at least the requested number of bytes available at the buffer's position,
+     * reading more of the file and growing the buffer as needed.
+     * @param length the number of bytes needed.
+     * @return the buffer, with at least length bytes remaining.
+     * @throws IOException if the file ends first, which is checked before any buffer is
+     * grown.
+     */
+
+    ByteBuffer require(int length) throws IOException {
+      if (length < 0) {
+        throw new IOException("corrupt snapshot record");
+      }
+      if (buffer.remaining() >= length) {
+        return buffer;
+      }
+      if (length - buffer.remaining() > channel.size() - channel.position()) {
+        /* Checked before growing the buffer, so a corrupt length cannot exhaust memory */
+        throw new IOException("snapshot ended unexpectedly");
+      }
+      if (buffer.capacity() < length) {
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(length, 2 * buffer.capacity()));
+        larger.put(buffer);
+        buffer = larger;
+      } else {
+        buffer.compact();
+      }
+      while (buffer.position() < length) {
+        if (channel.read(buffer) < 0) {
+          throw new IOException("snapshot ended unexpectedly");
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code DuplicateContactFinder} class groups the contacts of an Address Book into
+ * clusters of likely duplicates: contacts that share a phone number or an email address
+ * and whose names are within a few edits of each other.
+ * <p>
+ * The contacts are first split into blocks, in a single pass, by the packed key of their
+ * phone number and by their lower case email. Names are only compared within a block,
+ * so the work grows with the sizes of the blocks rather than with the square of the
+ * number of contacts. Contacts with no subscriber number or no email are not blocked on
+ * that field, since the default values would otherwise put them all in one block.
+ * <p>
+ * Within a block the contacts are sorted by name and each is compared with the
+ * {@code WINDOW} contacts after it, so blocks of up to {@code WINDOW + 1} contacts are
+ * compared in full and a large block, such as a shared office number, costs linear
+ * time. Contacts found to match are joined in a union-find forest, so a cluster holds
+ * every contact linked to another by a chain of matches.
+ * <p>
+ * {@code DuplicateContactFinder} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook#findDuplicateContacts
+ *
+ */
+
+final class DuplicateContactFinder {
+  /* The number of following contacts each contact of a block is compared with */
+  static final int WINDOW = 16;
+
+  private final List<Contact> contacts;
+  private final int maxNameDistance;
+  /* The union-find forest over the indexes of the contacts */
+  private final int[] parent;
+  private final int[] size;
+
+  private DuplicateContactFinder(List<Contact> contacts, int maxNameDistance) {
+    this.contacts = contacts;
+    this.maxNameDistance = maxNameDistance;
+    this.parent = new int[contacts.size()];
+    this.size = new int[contacts.size()];
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = i;
+      size[i] = 1;
+    }
+  }
+
+  /**
+   * Returns the clusters of likely duplicates among the provided contacts.
+   * @param contacts the contacts, in sorted order.
+   * @param maxNameDistance the greatest number of edits between the lower case names of
+   * two contacts in the same block for them to be considered duplicates.
+   * @return the clusters of two or more contacts, each in sorted order, ordered by their
+   * first contact.
+   */
+
+  static List<List<Contact>> find(List<Contact> contacts, int maxNameDistance) {
+    DuplicateContactFinder finder = new DuplicateContactFinder(contacts, maxNameDistance);
+    Map<Long, List<Integer>> phoneNumberBlocks = new HashMap<Long, List<Integer>>();
+    Map<String, List<Integer>> emailBlocks = new HashMap<String, List<Integer>>();
+    for (int i = 0; i < contacts.size(); i++) {
+      Contact contact = contacts.get(i);
+      long phoneNumberKey = contact.getPhoneNumberKey();
+      /* The subscriber number is in the low 32 bits; 0 is the default */
+      if ((int) phoneNumberKey != 0) {
+        addToBlock(phoneNumberBlocks, phoneNumberKey, i);
+      }
+      String email = contact.getLowerCaseEmail().trim();
+      if (!email.isEmpty()) {
+        addToBlock(emailBlocks, email, i);
+      }
+    }
+    for (List<Integer> block: phoneNumberBlocks.values()) {
+      finder.compareWithin(block);
+    }
+    for (List<Integer> block: emailBlocks.values()) {
+      finder.compareWithin(block);
+    }
+    return finder.clusters();
+  }
+
+  private static <K> void addToBlock(Map<K, List<Integer>> blocks, K key, int index) {
+    List<Integer> block = blocks.get(key);
+    if (block == null) {
+      block = new ArrayList<Integer>(2);
+      blocks.put(key, block);
+    }
+    block.add(index);
+  }
+
+  /**
+   * Compares the contacts of a block, sorted by lower case name, each with the
+   * {@code WINDOW} contacts after it, joining those whose names match.
+   */
+
+  private void compareWithin(List<Integer> block) {
+    if (block.size() < 2) {
+      return;
+    }
+    Integer[] indexes = block.toArray(new Integer[block.size()]);
+    /* Every pair of a block that fits in the window is compared, in whatever order */
+    if (indexes.length > WINDOW + 1) {
+      Arrays.sort(indexes, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer first, Integer second) {
+          return contacts.get(first).getLowerCaseName().compareTo(
+              contacts.get(second).getLowerCaseName());
+        }
+      });
+    }
+    for (int i = 0; i < indexes.length; i++) {
+      String name = contacts.get(indexes[i]).getLowerCaseName();
+      int root = find(indexes[i]);
+      int last = Math.min(i + WINDOW, indexes.length - 1);
+      for (int j = i + 1; j <= last; j++) {
+        /* Contacts already in the same cluster need not be compared */
+        int otherRoot = find(indexes[j]);
+        if (otherRoot != root && FuzzyNameIndex.distance(name,
+            contacts.get(indexes[j]).getLowerCaseName(), maxNameDistance)
+            <= maxNameDistance) {
+          root = union(root, otherRoot);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the clusters of two or more contacts. The contacts are visited in sorted
+   * order, so each cluster is sorted and the clusters are ordered by their first contact.
+   */
+
+  private List<List<Contact>> clusters() {
+    Map<Integer, List<Contact>> clustersByRoot = new HashMap<Integer, List<Contact>>();
+    List<List<Contact>> clusters = new ArrayList<List<Contact>>();
+    for (int i = 0; i < parent.length; i++) {
+      int root = find(i);
+      if (size[root] < 2) {
+        continue;
+      }
+      List<Contact> cluster = clustersByRoot.get(root);
+      if (cluster == null) {
+        cluster = new ArrayList<Contact>(size[root]);
+        clustersByRoot.put(root, cluster);
+        clusters.add(cluster);
+      }
+      cluster.add(contacts.get(i));
+    }
+    return clusters;
+  }
+
+  private int find(int index) {
+    while (parent[index] != index) {
+      /* Path halving: point every other node on the path at its grandparent */
+      parent[index] = parent[parent[index]];
+      index = parent[index];
+    }
+    return index;
+  }
+
+  /**
+   * Joins the trees with the provided roots, hanging the smaller under the larger.
+   * Returns the root of the joined tree.
+   */
+
+  private int union(int firstRoot, int secondRoot) {
+    if (size[firstRoot] < size[secondRoot]) {
+      int swap = firstRoot;
+      firstRoot = secondRoot;
+      secondRoot = swap;
+    }
+    parent[secondRoot] = firstRoot;
+    size[firstRoot] += size[secondRoot];
+    return firstRoot;
+  }
+}
@@ -0,0 +1,231 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code FuzzyNameIndex} class is a BK-tree of the distinct lower case names of the
+ * Contacts, used to find the Contacts whose name is within a given edit distance of a
+ * search string.
+ * <p>
+ * Each node holds one name and the Contacts with that name, and its children are kept
+ * by their Levenshtein distance from it. The distance obeys the triangle inequality, so
+ * a name within {@code k} edits of the search string can only be below a child whose
+ * distance from its parent is within {@code k} of the parent's distance from the search
+ * string; the other children are skipped without being visited. For small {@code k}
+ * a search visits a small fraction of the names.
+ * <p>
+ * A name whose last Contact is removed is left in the tree as a tombstone, since the
+ * names below it were placed by their distance from it. Once the tombstones outnumber
+ * the live names the tree is built again from the live names.
+ * <p>
+ * {@code FuzzyNameIndex} is used internally by {@code AddressBook} and is not
+ * thread-safe.
+ * @author Eric
+ * @see AddressBook#searchContactsByNameFuzzy
+ *
+ */
+
+final class FuzzyNameIndex {
+  private Node root;
+  private int names;
+  private int tombstones;
+
+  /**
+   * Adds the provided contact to the node of its lower case name, adding the node if the
+   * name is not in the tree.
+   * @param contact the contact to be indexed.
+   */
+
+  void add(Contact contact) {
+    String name = contact.getLowerCaseName();
+    Node added = null;
+    if (root == null) {
+      root = added = new Node(name);
+      names++;
+    }
+    Node node = root;
+    int distance;
+    while ((distance = distance(name, node.name)) != 0) {
+      Node child = node.child(distance);
+      if (child == null) {
+        child = added = new Node(name);
+        node.setChild(distance, child);
+        names++;
+      }
+      node = child;
+    }
+    if (node.contacts.isEmpty() && node != added) {
+      tombstones--;
+    }
+    node.contacts.add(contact);
+  }
+
+  /**
+   * Removes the provided contact from the node of its lower case name. The tree is built
+   * again once more than half of its names have no contacts.
+   * @param contact the contact to be removed from the index.
+   */
+
+  void remove(Contact contact) {
+    String name = contact.getLowerCaseName();
+    Node node = root;
+    int distance;
+    while (node != null && (distance = distance(name, node.name)) != 0) {
+      node = node.child(distance);
+    }
+    if (node == null || !node.contacts.remove(contact) || !node.contacts.isEmpty()) {
+      return;
+    }
+    tombstones++;
+    if (tombstones > names - tombstones) {
+      rebuild();
+    }
+  }
+
+  /**
+   * Returns the contacts whose lower case name is within the provided number of edits
+   * of the search string, in no particular order.
+   * @param lowerCaseName the lower case name to be searched for.
+   * @param maxDistance the greatest number of single character insertions, deletions
+   * and substitutions allowed.
+   * @return the matching contacts.
+   */
+
+  List<Contact> find(String lowerCaseName, int maxDistance) {
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    if (root == null) {
+      return matchingContacts;
+    }
+    List<Node> toVisit = new ArrayList<Node>();
+    toVisit.add(root);
+    while (!toVisit.isEmpty()) {
+      Node node = toVisit.remove(toVisit.size() - 1);
+      /* Past the farthest child plus maxDistance the exact distance no longer matters */
+      int limit = node.children.length - 1 + maxDistance;
+      int distance = distance(lowerCaseName, node.name, Math.max(limit, maxDistance));
+      if (distance <= maxDistance) {
+        matchingContacts.addAll(node.contacts);
+      }
+      int last = Math.min(distance + maxDistance, node.children.length - 1);
+      for (int d = Math.max(distance - maxDistance, 1); d <= last; d++) {
+        if (node.children[d] != null) {
+          toVisit.add(node.children[d]);
+        }
+      }
+    }
+    return matchingContacts;
+  }
+
+  /**
+   * Builds the tree again from the names that still have contacts, dropping the
+   * tombstones.
+   */
+
+  private void rebuild() {
+    List<Set<Contact>> live = new ArrayList<Set<Contact>>(names - tombstones);
+    List<Node> toVisit = new ArrayList<Node>();
+    toVisit.add(root);
+    while (!toVisit.isEmpty()) {
+      Node node = toVisit.remove(toVisit.size() - 1);
+      if (!node.contacts.isEmpty()) {
+        live.add(node.contacts);
+      }
+      for (Node child: node.children) {
+        if (child != null) {
+          toVisit.add(child);
+        }
+      }
+    }
+    root = null;
+    names = 0;
+    tombstones = 0;
+    for (Set<Contact> contacts: live) {
+      for (Contact contact: contacts) {
+        add(contact);
+      }
+    }
+  }
+
+  /**
+   * Returns the Levenshtein distance between the two strings, which is never more than
+   * the length of the longer string.
+   */
+
+  static int distance(String a, String b) {
+    return distance(a, b, Math.max(a.length(), b.length()));
+  }
+
+  /**
+   * Returns the Levenshtein distance between the two strings, or {@code limit + 1} if it
+   * is greater than the limit. Only two rows of the distance table are kept, and the
+   * computation stops as soon as every entry of a row exceeds the limit.
+   */
+
+  static int distance(String a, String b, int limit) {
+    if (a.length() > b.length()) {
+      String swap = a;
+      a = b;
+      b = swap;
+    }
+    if (b.length() - a.length() > limit) {
+      return limit + 1;
+    }
+    int[] previous = new int[a.length() + 1];
+    int[] current = new int[a.length() + 1];
+    for (int i = 0; i <= a.length(); i++) {
+      previous[i] = i;
+    }
+    for (int j = 1; j <= b.length(); j++) {
+      char c = b.charAt(j - 1);
+      current[0] = j;
+      int rowMinimum = j;
+      for (int i = 1; i <= a.length(); i++) {
+        int cost = (a.charAt(i - 1) == c) ? 0 : 1;
+        int value = Math.min(Math.min(current[i - 1], previous[i]) + 1,
+            previous[i - 1] + cost);
+        current[i] = value;
+        rowMinimum = Math.min(rowMinimum, value);
+      }
+      if (rowMinimum > limit) {
+        return limit + 1;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return Math.min(previous[a.length()], limit + 1);
+  }
+
+  /**
+   * A node of the tree: a name, the contacts with that name, and the children by their
+   * distance from the name.
+   */
+
+  private static final class Node {
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final String name;
+    private final Set<Contact> contacts = new HashSet<Contact>();
+    private Node[] children = NO_CHILDREN;
+
+    private Node(String name) {
+      this.name = name;
+    }
+
+    private Node child(int distance) {
+      return (distance < children.length) ? children[distance] : null;
+    }
+
+    private void setChild(int distance, Node child) {
+      if (distance >= children.length) {
+        Node[] grown = new Node[distance + 1];
+        System.arraycopy(children, 0, grown, 0, children.length);
+        children = grown;
+      }
+      children[distance] = child;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * The {@code GroupCommit} class coalesces concurrent requests to save the same file into
+ * as few durable writes as possible.
+ * <p>
+ * Each request takes a ticket. One thread at a time writes the file, and a write covers
+ * every ticket taken before it started, since the contents are read once the write has
+ * started. A thread whose request arrives while a write is running waits for it to
+ * finish and then, unless another thread has already done so, starts a single write
+ * covering every request that arrived in the meantime. Many saves in quick succession
+ * therefore cost at most two writes rather than one each.
+ * <p>
+ * A group commit is retired once no thread is using it, so that its owner can drop it:
+ * callers {@code join} before committing and {@code leave} afterwards, and a retired
+ * group commit cannot be joined again.
+ * <p>
+ * {@code GroupCommit} is used internally by {@code ConcurrentAddressBook} and is
+ * thread-safe.
+ * @author Eric
+ * @see ConcurrentAddressBook#saveAddressBookToFile
+ *
+ */
+
+final class GroupCommit {
+  private final String filePath;
+  private final AtomicFileWriter.Contents contents;
+  /* The last ticket taken, the last ticket saved and the last ticket whose write failed */
+  private long requested;
+  private long saved;
+  private long failed;
+  private Throwable failure;
+  private boolean writing;
+  /* The number of threads that have joined and not yet left */
+  private int active;
+  private boolean retired;
+
+  /**
+   * Creates a group commit of the provided contents to the file at the provided path.
+   * @param filePath the path of the file to be saved.
+   * @param contents the contents of the file, read afresh by every write.
+   */
+
+  GroupCommit(String filePath, AtomicFileWriter.Contents contents) {
+    this.filePath = filePath;
+    this.contents = contents;
+  }
+
+  /**
+   * Registers the calling thread as using this group commit.
+   * @return true if the thread may commit; false if the group commit has been retired
+   * and a new one must be used instead.
+   */
+
+  synchronized boolean join() {
+    if (retired) {
+      return false;
+    }
+    active++;
+    return true;
+  }
+
+  /**
+   * Unregisters a thread that joined this group commit, retiring it if no other thread
+   * is using it.
+   * @return true if the group commit has been retired and can be dropped.
+   */
+
+  synchronized boolean leave() {
+    if (--active == 0) {
+      retired = true;
+    }
+    return retired;
+  }
+
+  /**
+   * Saves the file and returns once a write that started after this call has completed.
+   * If the write covering this call fails, every thread waiting for it fails with the
+   * same cause.
+   * @throws IOException if the write covering this call fails.
+   * @throws RuntimeException if the write covering this call fails with this unchecked
+   * exception.
+   * @throws Error if the write covering this call fails with this error.
+   * @throws InterruptedIOException if the thread is interrupted while waiting for another
+   * thread's write.
+   * @throws FileNotFoundException if the directory of the file does not exist.
+   */
+
+  void commit() throws IOException, FileNotFoundException {
+    long ticket;
+    long batch;
+    synchronized (this) {
+      ticket = ++requested;
+      while (saved < ticket) {
+        if (failed >= ticket) {
+          throw batchFailure();
+        }
+        if (!writing) {
+          break;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException("interrupted while waiting to save " + filePath);
+        }
+      }
+      if (saved >= ticket) {
+        return;
+      }
+      /* Everything requested so far is covered by the write about to start */
+      batch = requested;
+      writing = true;
+    }
+    boolean succeeded = false;
+    try {
+      AtomicFileWriter.write(filePath, contents);
+      succeeded = true;
+    } catch (IOException e) {
+      setFailure(e);
+      throw e;
+    } catch (RuntimeException e) {
+      setFailure(e);
+      throw e;
+    } catch (Error e) {
+      setFailure(e);
+      throw e;
+    } finally {
+      synchronized (this) {
+        writing = false;
+        if (succeeded) {
+          saved = Math.max(saved, batch);
+        } else {
+          failed = Math.max(failed, batch);
+        }
+        notifyAll();
+      }
+    }
+  }
+
+  private synchronized void setFailure(Throwable e) {
+    failure = e;
+  }
+
+  /**
+   * Returns the exception to be thrown by a thread whose write failed in another
+   * thread: unchecked failures are rethrown as they are.
+   */
+
+  private IOException batchFailure() {
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+    return new IOException("failed to save " + filePath, failure);
+  }
+}
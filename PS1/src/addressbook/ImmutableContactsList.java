@@ -0,0 +1,250 @@
+package addressbook;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The {@code ImmutableContactsList} class is an immutable list of the contacts of an
+ * {@code AddressBook} as they were at one version of the Address Book.
+ * <p>
+ * The contacts are held in sorted order in a persistent balanced binary tree, each node
+ * of which records the size of its subtree, so the contact at any index is found in
+ * logarithmic time. Adding or removing a contact gives a new list that shares all but
+ * a logarithmic number of nodes with the list it was made from, which is left
+ * unchanged. An Address Book can therefore hand out a consistent list of its contacts
+ * at every version without copying them.
+ * <p>
+ * {@code ImmutableContactsList} objects are immutable and may be read from any thread
+ * without locking. Attempting to modify one will throw an
+ * {@code UnsupportedOperationException}.
+ * @author Eric
+ * @see AddressBook#getContactsSnapshot
+ *
+ */
+
+public final class ImmutableContactsList extends AbstractList<Contact>
+    implements RandomAccess {
+  private final Node root;
+  private final long version;
+
+  private ImmutableContactsList(Node root, long version) {
+    this.root = root;
+    this.version = version;
+  }
+
+  /**
+   * Returns a list of the provided contacts, which must be in sorted order.
+   * @param contacts the sorted contacts.
+   * @param version the version of the Address Book the contacts were taken at.
+   * @return a list of the contacts in time linear in their number.
+   */
+
+  static ImmutableContactsList of(List<Contact> contacts, long version) {
+    return new ImmutableContactsList(build(contacts, 0, contacts.size()), version);
+  }
+
+  /**
+   * Returns a list with the provided contact inserted at the index. This list is left
+   * unchanged.
+   * @param index the index the contact is to be inserted at.
+   * @param contact the contact to be inserted.
+   * @param newVersion the version of the Address Book once the contact is inserted.
+   * @return the new list, sharing all but a logarithmic number of nodes with this one.
+   */
+
+  ImmutableContactsList withContactAt(int index, Contact contact, long newVersion) {
+    if (index < 0 || index > size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+    return new ImmutableContactsList(insert(root, index, contact), newVersion);
+  }
+
+  /**
+   * Returns a list with the contact at the index removed. This list is left unchanged.
+   * @param index the index of the contact to be removed.
+   * @param newVersion the version of the Address Book once the contact is removed.
+   * @return the new list, sharing all but a logarithmic number of nodes with this one.
+   */
+
+  ImmutableContactsList withoutContactAt(int index, long newVersion) {
+    rangeCheck(index);
+    return new ImmutableContactsList(remove(root, index), newVersion);
+  }
+
+  /**
+   * Returns the version of the Address Book whose contacts this list holds.
+   * @return the version, as returned by {@code AddressBook.getVersion}.
+   */
+
+  public long getVersion() {
+    return version;
+  }
+
+  @Override
+  public Contact get(int index) {
+    rangeCheck(index);
+    Node node = root;
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index == leftSize) {
+        return node.contact;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return size(root);
+  }
+
+  /**
+   * Returns an iterator over the contacts in sorted order. Each step takes constant
+   * amortized time, rather than the logarithmic time of {@code get}.
+   */
+
+  @Override
+  public Iterator<Contact> iterator() {
+    return new Iterator<Contact>() {
+      /* The nodes whose contact and right subtree are still to be visited, deepest last */
+      private final Node[] path = new Node[height(root)];
+      private int depth = pushLeft(root, 0);
+
+      private int pushLeft(Node node, int top) {
+        for (; node != null; node = node.left) {
+          path[top++] = node;
+        }
+        return top;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return depth > 0;
+      }
+
+      @Override
+      public Contact next() {
+        if (depth == 0) {
+          throw new NoSuchElementException();
+        }
+        Node node = path[--depth];
+        depth = pushLeft(node.right, depth);
+        return node.contact;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private void rangeCheck(int index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    }
+  }
+
+  private static Node build(List<Contact> contacts, int from, int to) {
+    if (from == to) {
+      return null;
+    }
+    int middle = (from + to) >>> 1;
+    return new Node(build(contacts, from, middle), contacts.get(middle),
+        build(contacts, middle + 1, to));
+  }
+
+  private static Node insert(Node node, int index, Contact contact) {
+    if (node == null) {
+      return new Node(null, contact, null);
+    }
+    int leftSize = size(node.left);
+    if (index <= leftSize) {
+      return balance(insert(node.left, index, contact), node.contact, node.right);
+    }
+    return balance(node.left, node.contact, insert(node.right, index - leftSize - 1,
+        contact));
+  }
+
+  private static Node remove(Node node, int index) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return balance(remove(node.left, index), node.contact, node.right);
+    }
+    if (index > leftSize) {
+      return balance(node.left, node.contact, remove(node.right, index - leftSize - 1));
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+    /* Replace the contact with the first contact of the right subtree */
+    Node first = node.right;
+    while (first.left != null) {
+      first = first.left;
+    }
+    return balance(node.left, first.contact, remove(node.right, 0));
+  }
+
+  /**
+   * Returns a node with the provided children and contact, rotated so that the heights
+   * of its subtrees differ by at most one. The subtrees must differ by at most two.
+   */
+
+  private static Node balance(Node left, Contact contact, Node right) {
+    int difference = height(left) - height(right);
+    if (difference > 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node(left.left, left.contact, new Node(left.right, contact, right));
+      }
+      return new Node(new Node(left.left, left.contact, left.right.left),
+          left.right.contact, new Node(left.right.right, contact, right));
+    }
+    if (difference < -1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node(new Node(left, contact, right.left), right.contact, right.right);
+      }
+      return new Node(new Node(left, contact, right.left.left), right.left.contact,
+          new Node(right.left.right, right.contact, right.right));
+    }
+    return new Node(left, contact, right);
+  }
+
+  private static int size(Node node) {
+    return (node == null) ? 0 : node.size;
+  }
+
+  private static int height(Node node) {
+    return (node == null) ? 0 : node.height;
+  }
+
+  /**
+   * A node of the tree. Nodes are never changed once built, so they are shared freely
+   * between lists.
+   */
+
+  private static final class Node {
+    private final Node left;
+    private final Contact contact;
+    private final Node right;
+    private final int size;
+    private final int height;
+
+    private Node(Node left, Contact contact, Node right) {
+      this.left = left;
+      this.contact = contact;
+      this.right = right;
+      this.size = size(left) + size(right) + 1;
+      this.height = Math.max(height(left), height(right)) + 1;
+    }
+  }
+}
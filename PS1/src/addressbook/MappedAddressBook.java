@@ -0,0 +1,217 @@
+package addressbook;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The {@code MappedAddressBook} class is a read-only address book backed by a memory
+ * mapping of a snapshot file saved by {@code AddressBook.saveAddressBookToSnapshot}.
+ * <p>
+ * Contacts are not held on the heap. Each {@code Contact} is decoded from the mapped
+ * file when it is accessed, using the snapshot's offset index to find its record, so
+ * several processes opening the same snapshot share the operating system's page cache
+ * instead of each holding its own copy of every Contact.
+ * <p>
+ * {@code MappedAddressBook} provides the same {@code searchContactsList} and
+ * {@code getUnmodifiableContactsList} semantics as {@code AddressBook}. Contacts are
+ * returned in the snapshot's sorted order. Changes to the snapshot file after it has
+ * been opened are not supported.
+ * <p>
+ * A single snapshot file mapped by {@code MappedAddressBook} cannot be larger than
+ * 2GB.
+ * <p>
+ * Methods in the {@code MappedAddressBook} class are thread-safe.
+ * @see AddressBook
+ * @author Eric
+ *
+ */
+
+public final class MappedAddressBook {
+  private static final int OFFSET_SIZE = 8;
+
+  private final ByteBuffer snapshot;
+  private final int contactsCount;
+  private final int offsetsPosition;
+  private final List<Contact> contactsView;
+
+  private MappedAddressBook(ByteBuffer snapshot, int contactsCount) {
+    this.snapshot = snapshot;
+    this.contactsCount = contactsCount;
+    this.offsetsPosition = snapshot.limit() - OFFSET_SIZE * contactsCount;
+    this.contactsView = new ContactsView();
+  }
+
+  /**
+   * Opens a snapshot file saved by {@code AddressBook.saveAddressBookToSnapshot} as a
+   * read-only address book.
+   * @param filePath the absolute path of the snapshot to be opened.
+   * @return the read-only address book backed by the snapshot.
+   * @throws IOException if the file cannot be mapped, is larger than 2GB, or is not a
+   * snapshot with an offset index in the current sort order. A snapshot saved before
+   * phone numbers were sorted numerically can be read with
+   * {@code AddressBook.readAddressBookFromSnapshot} and saved again.
+   * @throws FileNotFoundException if the specified pathname does not exist.
+   */
+
+  public static MappedAddressBook open(String filePath) throws IOException,
+      FileNotFoundException {
+    FileChannel channel = new FileInputStream(filePath).getChannel();
+    try {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("snapshot is too large to be mapped");
+      }
+      if (size < ContactsSnapshot.HEADER_SIZE) {
+        throw new IOException("not an address book snapshot");
+      }
+      /* The mapping stays valid after the channel is closed */
+      MappedByteBuffer snapshot = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int contactsCount = ContactsSnapshot.readHeader(snapshot.duplicate(),
+          ContactsSnapshot.SORTED_VERSION);
+      if ((long) OFFSET_SIZE * contactsCount > size - ContactsSnapshot.HEADER_SIZE) {
+        throw new IOException("corrupt snapshot header");
+      }
+      return new MappedAddressBook(snapshot, contactsCount);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * Search for a provided string of characters in each property field for
+   * all contacts in the address book. Return all contacts for which the provided
+   * string is a substring of at least one of the property fields of {@code Contact}.
+   * <p>
+   * Follows the same rules as {@code AddressBook.searchContactsList}. Every record is
+   * scanned, but only the contacts that match are built. Fields that are entirely ASCII
+   * are compared against the search string byte by byte in the mapped file; other
+   * fields are decoded to be compared.
+   * @param searchString the string or substring of characters to be searched for
+   * within each contact's set of property fields.
+   * @return a list of contacts who match the search, in sorted order.
+   * @see AddressBook#searchContactsList
+   */
+
+  public List<Contact> searchContactsList(String searchString) {
+    if (searchString == null || searchString.isEmpty()) {
+      return Collections.emptyList();
+    }
+    String lowerCaseSearchString = searchString.toLowerCase();
+    byte[] asciiSearchString = AsciiText.bytes(lowerCaseSearchString);
+    String number = AddressBook.searchNumber(searchString);
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    for (int i = 0; i < contactsCount; i++) {
+      if (recordMatches(record(i), lowerCaseSearchString, asciiSearchString, number)) {
+        matchingContacts.add(decode(i));
+      }
+    }
+    return matchingContacts;
+  }
+
+  /**
+   * Accessor method to get an unmodifiable list of the contacts in the address book.
+   * <p>
+   * The returned list decodes each {@code Contact} from the snapshot when it is
+   * accessed; a new but equal {@code Contact} object is returned every time.
+   * Attempting to modify the list will throw an UnsupportedOperationException.
+   * @return an unmodifiable list of contacts in the address book.
+   */
+
+  public List<Contact> getUnmodifiableContactsList() {
+    return contactsView;
+  }
+
+  /**
+   * Returns a buffer positioned at the start of the fields of the record for the
+   * contact at the provided index. Each call returns a new buffer, so concurrent
+   * readers do not share a position.
+   */
+
+  private ByteBuffer record(int index) {
+    ByteBuffer record = snapshot.duplicate();
+    long offset = snapshot.getLong(offsetsPosition + OFFSET_SIZE * index);
+    /* Skip the record length */
+    record.position((int) offset + 4);
+    return record;
+  }
+
+  /**
+   * Decodes the contact at the provided index.
+   */
+
+  private Contact decode(int index) {
+    ByteBuffer record = record(index);
+    return ContactsSnapshot.decode(record, record.getInt(record.position() - 4));
+  }
+
+  /**
+   * Checks a record against a search without building its {@code Contact}, following
+   * {@code AddressBook.contactMatches}.
+   */
+
+  private static boolean recordMatches(ByteBuffer record, String lowerCaseSearchString,
+      byte[] asciiSearchString, String number) {
+    short countryCode = record.getShort();
+    short areaCode = record.getShort();
+    int subscriberNumber = record.getInt();
+    if (!number.isEmpty()
+        && Contact.phoneNumberContains(countryCode, areaCode, subscriberNumber, number)) {
+      return true;
+    }
+    /* Fields are stored in the order name, email, postal address, note */
+    for (int field = 0; field < 4; field++) {
+      if (fieldContains(record, lowerCaseSearchString, asciiSearchString)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks the length-prefixed field at the record's position against the search,
+   * leaving the record positioned after the field. An ASCII field is compared in place;
+   * only a field with other characters is decoded.
+   */
+
+  private static boolean fieldContains(ByteBuffer record, String lowerCaseSearchString,
+      byte[] asciiSearchString) {
+    int start = record.position() + 4;
+    int end = start + record.getInt(record.position());
+    if (AsciiText.LOWER_CASE_IS_SIMPLE && AsciiText.isAscii(record, start, end)) {
+      record.position(end);
+      /* The lower case of ASCII text is ASCII, so it cannot hold other characters */
+      return asciiSearchString != null
+          && AsciiText.containsIgnoringCase(record, start, end, asciiSearchString);
+    }
+    return ContactsSnapshot.getString(record).toLowerCase().contains(lowerCaseSearchString);
+  }
+
+  /**
+   * Unmodifiable list view over the records of the snapshot.
+   */
+
+  private final class ContactsView extends AbstractList<Contact> implements RandomAccess {
+
+    @Override
+    public Contact get(int index) {
+      if (index < 0 || index >= contactsCount) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + contactsCount);
+      }
+      return decode(index);
+    }
+
+    @Override
+    public int size() {
+      return contactsCount;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code ParallelContactFilter} class checks a list of contacts against a search on
+ * several threads at once.
+ * <p>
+ * The list is split into contiguous chunks, each chunk is checked by a task on the
+ * provided executor, and the matches of each chunk are appended in chunk order, so the
+ * matches are returned in the same order as the list.
+ * <p>
+ * The list must not be modified while it is being filtered.
+ * {@code ParallelContactFilter} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook#enableParallelSearch
+ *
+ */
+
+final class ParallelContactFilter {
+  /* Fewer contacts than this per task and the task overhead outweighs the scan */
+  private static final int MINIMUM_CHUNK_SIZE = 4096;
+  /* Several chunks per processor so a slow chunk does not hold up the others */
+  private static final int CHUNKS_PER_PROCESSOR = 4;
+
+  private ParallelContactFilter() {
+  }
+
+  /**
+   * Returns the contacts of the list that match a search, in list order.
+   * @param contacts the contacts to be checked.
+   * @param lowerCaseSearchString the lower case search string.
+   * @param number the digits of a phone number search; empty if not a phone number search.
+   * @param executor the executor to run the chunks on.
+   * @return the matching contacts, in the same order as in contacts.
+   */
+
+  static List<Contact> filter(List<Contact> contacts, String lowerCaseSearchString,
+      String number, ExecutorService executor) {
+    int chunks = CHUNKS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+    int chunkSize = Math.max(MINIMUM_CHUNK_SIZE, (contacts.size() + chunks - 1) / chunks);
+    List<Future<List<Contact>>> results = new ArrayList<Future<List<Contact>>>();
+    for (int start = 0; start < contacts.size(); start += chunkSize) {
+      int end = Math.min(contacts.size(), start + chunkSize);
+      results.add(executor.submit(
+          new ChunkFilter(contacts.subList(start, end), lowerCaseSearchString, number)));
+    }
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    try {
+      for (Future<List<Contact>> result: results) {
+        matchingContacts.addAll(result.get());
+      }
+    } catch (InterruptedException e) {
+      cancel(results);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("search was interrupted", e);
+    } catch (ExecutionException e) {
+      cancel(results);
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("search failed", cause);
+    }
+    return matchingContacts;
+  }
+
+  private static void cancel(List<Future<List<Contact>>> results) {
+    for (Future<List<Contact>> result: results) {
+      result.cancel(true);
+    }
+  }
+
+  /**
+   * Checks one chunk of the list against the search.
+   */
+
+  private static final class ChunkFilter implements Callable<List<Contact>> {
+    private final List<Contact> chunk;
+    private final String lowerCaseSearchString;
+    private final String number;
+
+    private ChunkFilter(List<Contact> chunk, String lowerCaseSearchString, String number) {
+      this.chunk = chunk;
+      this.lowerCaseSearchString = lowerCaseSearchString;
+      this.number = number;
+    }
+
+    @Override
+    public List<Contact> call() {
+      List<Contact> matchingContacts = new ArrayList<Contact>();
+      for (Contact contact: chunk) {
+        if (AddressBook.contactMatches(contact, lowerCaseSearchString, number)) {
+          matchingContacts.add(contact);
+        }
+      }
+      return matchingContacts;
+    }
+  }
+}
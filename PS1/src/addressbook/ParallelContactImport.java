@@ -0,0 +1,171 @@
+package addressbook;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.json.simple.parser.ParseException;
+
+/**
+ * The {@code ParallelContactImport} class reads the contacts of a "Contacts List" file,
+ * building them on several threads at once.
+ * <p>
+ * The calling thread parses the file one record at a time and gathers the string fields
+ * of the records into chunks. Each chunk is handed to a task on the provided executor,
+ * which tokenizes the phone numbers and postal addresses and builds the contacts. The
+ * contacts of each chunk are appended in chunk order, so they are returned in file
+ * order. Only a few chunks per processor are in flight at once; the parser waits for
+ * the oldest to be built before handing out more, so the memory used by the raw
+ * records stays bounded however large the file is.
+ * <p>
+ * {@code ParallelContactImport} is used internally by {@code AddressBook}.
+ * @author Eric
+ * @see AddressBook#readAddressBookFromFile(String, ExecutorService)
+ *
+ */
+
+final class ParallelContactImport {
+  /* Fewer records than this per task and the task overhead outweighs the work */
+  private static final int CHUNK_SIZE = 4096;
+  /* Enough chunks per processor to keep the workers busy while the parser runs ahead */
+  private static final int CHUNKS_IN_FLIGHT_PER_PROCESSOR = 4;
+  private static final int FIELDS = 5;
+
+  private ParallelContactImport() {
+  }
+
+  /**
+   * Returns the contacts of the file at the provided path, in file order.
+   * @param filePath the path of the file to be read.
+   * @param charset the charset the file is encoded in.
+   * @param executor the executor to build the contacts on.
+   * @return the contacts of the file.
+   * @throws IOException if the file cannot be read.
+   * @throws ParseException if the file is not valid JSON.
+   * @throws FileNotFoundException if the file does not exist.
+   */
+
+  static List<Contact> read(String filePath, Charset charset, ExecutorService executor)
+      throws IOException, ParseException, FileNotFoundException {
+    ChunkSubmitter submitter = new ChunkSubmitter(executor);
+    boolean completed = false;
+    try {
+      ContactsJsonStream.read(filePath, charset, submitter);
+      List<Contact> contactsRead = submitter.finish();
+      completed = true;
+      return contactsRead;
+    } finally {
+      if (!completed) {
+        submitter.cancel();
+      }
+    }
+  }
+
+  private static List<Contact> join(Future<List<Contact>> result) {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("import was interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("import failed", cause);
+    }
+  }
+
+  /**
+   * Gathers the records into chunks and submits each full chunk to be built, joining the
+   * oldest chunk first when too many are in flight.
+   */
+
+  private static final class ChunkSubmitter implements ContactsJsonStream.RecordHandler {
+    private final ExecutorService executor;
+    private final int maximumInFlight;
+    private final LinkedList<Future<List<Contact>>> inFlight =
+        new LinkedList<Future<List<Contact>>>();
+    private final List<Contact> contactsRead = new ArrayList<Contact>();
+    private String[] fields = new String[CHUNK_SIZE * FIELDS];
+    private int length;
+
+    private ChunkSubmitter(ExecutorService executor) {
+      this.executor = executor;
+      this.maximumInFlight =
+          CHUNKS_IN_FLIGHT_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+    }
+
+    @Override
+    public void record(String name, String number, String email, String address,
+        String note) {
+      int offset = length * FIELDS;
+      fields[offset] = name;
+      fields[offset + 1] = number;
+      fields[offset + 2] = email;
+      fields[offset + 3] = address;
+      fields[offset + 4] = note;
+      if (++length == CHUNK_SIZE) {
+        submit();
+      }
+    }
+
+    private void submit() {
+      if (inFlight.size() == maximumInFlight) {
+        contactsRead.addAll(join(inFlight.removeFirst()));
+      }
+      inFlight.add(executor.submit(new ChunkBuilder(fields, length)));
+      fields = new String[CHUNK_SIZE * FIELDS];
+      length = 0;
+    }
+
+    private List<Contact> finish() {
+      if (length > 0) {
+        submit();
+      }
+      while (!inFlight.isEmpty()) {
+        contactsRead.addAll(join(inFlight.removeFirst()));
+      }
+      return contactsRead;
+    }
+
+    private void cancel() {
+      for (Future<List<Contact>> result: inFlight) {
+        result.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Builds the contacts of one chunk of records.
+   */
+
+  private static final class ChunkBuilder implements Callable<List<Contact>> {
+    private final String[] fields;
+    private final int length;
+
+    private ChunkBuilder(String[] fields, int length) {
+      this.fields = fields;
+      this.length = length;
+    }
+
+    @Override
+    public List<Contact> call() {
+      List<Contact> contacts = new ArrayList<Contact>(length);
+      for (int offset = 0; offset < length * FIELDS; offset += FIELDS) {
+        contacts.add(AddressBook.buildContact(fields[offset], fields[offset + 1],
+            fields[offset + 2], fields[offset + 3], fields[offset + 4]));
+      }
+      return contacts;
+    }
+  }
+}
@@ -0,0 +1,230 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@code PhoneNumberIndex} class indexes the digits of each Contact's phone number
+ * in two digit tries.
+ * <p>
+ * The substring trie holds every suffix of the country code, the area code and the
+ * subscriber number. A digit string is a substring of one of the three fields exactly
+ * when it is a prefix of one of those suffixes, so a substring lookup walks the trie
+ * along the digits and collects the contacts below the node reached. This matches the
+ * phone number search of {@code AddressBook}, where the digits searched for must fall
+ * within a single field of the phone number.
+ * <p>
+ * The prefix trie holds the digits of the whole phone number, country code, area code
+ * and subscriber number concatenated, and answers caller ID style lookups where the
+ * digits searched for start at the country code.
+ * <p>
+ * Digits are taken from the numeric fields of the phone number, so no strings are built
+ * per contact.
+ * <p>
+ * {@code PhoneNumberIndex} is used internally by {@code AddressBook} and is not thread-safe.
+ * @author Eric
+ * @see AddressBook
+ *
+ */
+
+final class PhoneNumberIndex {
+  /* Enough for a short, a short and an int */
+  private static final int MAX_DIGITS = 5 + 5 + 10;
+
+  private final Node substringRoot = new Node();
+  private final Node prefixRoot = new Node();
+
+  /**
+   * Adds the provided contact's phone number to the index.
+   * @param contact the contact to be indexed.
+   */
+
+  void add(Contact contact) {
+    int[] digits = new int[MAX_DIGITS];
+    int countryEnd = appendDigits(contact.getCountryCode(), digits, 0);
+    int areaEnd = appendDigits(contact.getAreaCode(), digits, countryEnd);
+    int subscriberEnd = appendDigits(contact.getSubscriberNumber(), digits, areaEnd);
+    addSuffixes(contact, digits, 0, countryEnd);
+    addSuffixes(contact, digits, countryEnd, areaEnd);
+    addSuffixes(contact, digits, areaEnd, subscriberEnd);
+    insert(prefixRoot, contact, digits, 0, subscriberEnd);
+  }
+
+  /**
+   * Removes the provided contact's phone number from the index.
+   * @param contact the contact to be removed from the index.
+   */
+
+  void remove(Contact contact) {
+    int[] digits = new int[MAX_DIGITS];
+    int countryEnd = appendDigits(contact.getCountryCode(), digits, 0);
+    int areaEnd = appendDigits(contact.getAreaCode(), digits, countryEnd);
+    int subscriberEnd = appendDigits(contact.getSubscriberNumber(), digits, areaEnd);
+    removeSuffixes(contact, digits, 0, countryEnd);
+    removeSuffixes(contact, digits, countryEnd, areaEnd);
+    removeSuffixes(contact, digits, areaEnd, subscriberEnd);
+    delete(prefixRoot, contact, digits, 0, subscriberEnd);
+  }
+
+  /**
+   * Returns the contacts whose country code, area code or subscriber number contains
+   * the provided digits.
+   * @param digits a non-empty string of the digits 0-9.
+   * @return the matching contacts, in no particular order.
+   */
+
+  Set<Contact> findContaining(String digits) {
+    return collect(find(substringRoot, digits));
+  }
+
+  /**
+   * Returns the contacts whose phone number, read as the country code, area code and
+   * subscriber number concatenated, starts with the provided digits.
+   * @param digits a non-empty string of the digits 0-9.
+   * @return the matching contacts, in no particular order.
+   */
+
+  Set<Contact> findStartingWith(String digits) {
+    return collect(find(prefixRoot, digits));
+  }
+
+  /**
+   * Writes the decimal digits of a non-negative value into digits starting at the
+   * provided position, most significant digit first.
+   * @return the position after the last digit written.
+   */
+
+  private static int appendDigits(int value, int[] digits, int start) {
+    int length = 1;
+    for (int rest = value / 10; rest > 0; rest /= 10) {
+      length++;
+    }
+    int rest = value;
+    for (int i = start + length - 1; i >= start; i--) {
+      digits[i] = rest % 10;
+      rest /= 10;
+    }
+    return start + length;
+  }
+
+  private void addSuffixes(Contact contact, int[] digits, int start, int end) {
+    for (int i = start; i < end; i++) {
+      insert(substringRoot, contact, digits, i, end);
+    }
+  }
+
+  private void removeSuffixes(Contact contact, int[] digits, int start, int end) {
+    for (int i = start; i < end; i++) {
+      delete(substringRoot, contact, digits, i, end);
+    }
+  }
+
+  private static void insert(Node root, Contact contact, int[] digits, int start, int end) {
+    Node node = root;
+    for (int i = start; i < end; i++) {
+      node = node.childOrCreate(digits[i]);
+    }
+    if (node.contacts == null) {
+      node.contacts = new HashSet<Contact>();
+    }
+    node.contacts.add(contact);
+  }
+
+  /**
+   * Removes the contact from the node at the end of the digits and unlinks any nodes
+   * left without contacts or children on the way back up.
+   * @return true if node is now empty and can be unlinked from its parent.
+   */
+
+  private static boolean delete(Node node, Contact contact, int[] digits, int start, int end) {
+    if (start == end) {
+      if (node.contacts != null) {
+        node.contacts.remove(contact);
+        if (node.contacts.isEmpty()) {
+          node.contacts = null;
+        }
+      }
+    } else {
+      Node child = node.child(digits[start]);
+      if (child != null && delete(child, contact, digits, start + 1, end)) {
+        node.children[digits[start]] = null;
+      }
+    }
+    return node.isEmpty();
+  }
+
+  private static Node find(Node root, String digits) {
+    Node node = root;
+    for (int i = 0; i < digits.length() && node != null; i++) {
+      int digit = digits.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        throw new IllegalArgumentException("digits must only contain 0-9");
+      }
+      node = node.child(digit);
+    }
+    return node;
+  }
+
+  private static Set<Contact> collect(Node start) {
+    Set<Contact> contacts = new HashSet<Contact>();
+    if (start == null) {
+      return contacts;
+    }
+    List<Node> pending = new ArrayList<Node>();
+    pending.add(start);
+    while (!pending.isEmpty()) {
+      Node node = pending.remove(pending.size() - 1);
+      if (node.contacts != null) {
+        contacts.addAll(node.contacts);
+      }
+      if (node.children != null) {
+        for (Node child: node.children) {
+          if (child != null) {
+            pending.add(child);
+          }
+        }
+      }
+    }
+    return contacts;
+  }
+
+  /**
+   * A node of a digit trie. Contacts are held at the node where their digits end;
+   * children and contacts are allocated on first use.
+   */
+
+  private static final class Node {
+    private Node[] children;
+    private Set<Contact> contacts;
+
+    private Node child(int digit) {
+      return (children == null) ? null : children[digit];
+    }
+
+    private Node childOrCreate(int digit) {
+      if (children == null) {
+        children = new Node[10];
+      }
+      if (children[digit] == null) {
+        children[digit] = new Node();
+      }
+      return children[digit];
+    }
+
+    private boolean isEmpty() {
+      if (contacts != null) {
+        return false;
+      }
+      if (children != null) {
+        for (Node child: children) {
+          if (child != null) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package addressbook;
+
+/**
+ * The {@code SaveStatistics} class reports on the background saves of an
+ * {@code AddressBook}.
+ * <p>
+ * The statistics are a snapshot taken when they were requested and do not change.
+ * {@code SaveStatistics} objects are immutable.
+ * @author Eric
+ * @see AddressBook#getSaveStatistics
+ *
+ */
+
+public final class SaveStatistics {
+  private static final double NANOS_PER_MILLI = 1000000.0;
+
+  private final int queueDepth;
+  private final long completedSaves;
+  private final long failedSaves;
+  private final long coalescedSaves;
+  private final long lastWriteNanos;
+  private final long totalWriteNanos;
+
+  SaveStatistics(int queueDepth, long completedSaves, long failedSaves, long coalescedSaves,
+      long lastWriteNanos, long totalWriteNanos) {
+    this.queueDepth = queueDepth;
+    this.completedSaves = completedSaves;
+    this.failedSaves = failedSaves;
+    this.coalescedSaves = coalescedSaves;
+    this.lastWriteNanos = lastWriteNanos;
+    this.totalWriteNanos = totalWriteNanos;
+  }
+
+  /**
+   * Returns the number of saves queued and not yet started.
+   * @return the number of saves waiting for the writer thread.
+   */
+
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /**
+   * Returns the number of writes that completed successfully.
+   * @return the number of successful writes.
+   */
+
+  public long getCompletedSaves() {
+    return completedSaves;
+  }
+
+  /**
+   * Returns the number of writes that failed.
+   * @return the number of failed writes.
+   */
+
+  public long getFailedSaves() {
+    return failedSaves;
+  }
+
+  /**
+   * Returns the number of saves that were merged into a save already queued for the same
+   * file instead of being written separately.
+   * @return the number of coalesced saves.
+   */
+
+  public long getCoalescedSaves() {
+    return coalescedSaves;
+  }
+
+  /**
+   * Returns how long the most recent write took, whether or not it succeeded.
+   * @return the duration of the last write in milliseconds; 0 if there has been none.
+   */
+
+  public double getLastWriteMillis() {
+    return lastWriteNanos / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Returns the average time taken by a write, whether or not it succeeded.
+   * @return the average duration of a write in milliseconds; 0 if there has been none.
+   */
+
+  public double getAverageWriteMillis() {
+    long writes = completedSaves + failedSaves;
+    return (writes == 0) ? 0 : totalWriteNanos / NANOS_PER_MILLI / writes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("queued=%d completed=%d failed=%d coalesced=%d "
+        + "lastWriteMillis=%.3f averageWriteMillis=%.3f", queueDepth, completedSaves,
+        failedSaves, coalescedSaves, getLastWriteMillis(), getAverageWriteMillis());
+  }
+}
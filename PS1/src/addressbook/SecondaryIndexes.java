@@ -0,0 +1,161 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The {@code SecondaryIndexes} class keeps the Contacts of an address book in sorted maps
+ * keyed by their lower case email, email domain, city, state and country.
+ * <p>
+ * Each map holds, for every key, the Contacts with that key in their sorted order, so
+ * the Contacts with a given key are found in time logarithmic in the number of keys
+ * plus the number of Contacts found. The Contacts whose key starts with a given prefix
+ * are a contiguous range of keys and are found the same way, then sorted. Contacts with
+ * an empty key, such as those without an email, are not held in that field's map.
+ * <p>
+ * {@code SecondaryIndexes} is used internally by {@code AddressBook} and is not
+ * thread-safe.
+ * @author Eric
+ * @see AddressBook#enableSecondaryIndexes
+ *
+ */
+
+final class SecondaryIndexes {
+
+  /**
+   * The fields of a Contact that are indexed, each with its key.
+   */
+
+  enum Field {
+    EMAIL {
+      @Override
+      String key(Contact contact) {
+        return contact.getLowerCaseEmail();
+      }
+    },
+    EMAIL_DOMAIN {
+      @Override
+      String key(Contact contact) {
+        String email = contact.getLowerCaseEmail();
+        int at = email.lastIndexOf('@');
+        return (at < 0) ? "" : email.substring(at + 1);
+      }
+    },
+    CITY {
+      @Override
+      String key(Contact contact) {
+        return contact.getCity().toLowerCase();
+      }
+    },
+    STATE {
+      @Override
+      String key(Contact contact) {
+        return contact.getState().toLowerCase();
+      }
+    },
+    COUNTRY {
+      @Override
+      String key(Contact contact) {
+        return contact.getCountry().toLowerCase();
+      }
+    };
+
+    /**
+     * Returns the lower case key of the Contact for this field; empty if it has none.
+     */
+    abstract String key(Contact contact);
+  }
+
+  private final Map<Field, NavigableMap<String, Set<Contact>>> indexes =
+      new EnumMap<Field, NavigableMap<String, Set<Contact>>>(Field.class);
+
+  SecondaryIndexes() {
+    for (Field field: Field.values()) {
+      indexes.put(field, new TreeMap<String, Set<Contact>>());
+    }
+  }
+
+  /**
+   * Adds the provided contact to the map of every field for which it has a key.
+   * @param contact the contact to be indexed.
+   */
+
+  void add(Contact contact) {
+    for (Field field: Field.values()) {
+      String key = field.key(contact);
+      if (!key.isEmpty()) {
+        NavigableMap<String, Set<Contact>> index = indexes.get(field);
+        Set<Contact> contacts = index.get(key);
+        if (contacts == null) {
+          contacts = new TreeSet<Contact>();
+          index.put(key, contacts);
+        }
+        contacts.add(contact);
+      }
+    }
+  }
+
+  /**
+   * Removes the provided contact from the map of every field. Keys left without any
+   * contacts are dropped.
+   * @param contact the contact to be removed from the indexes.
+   */
+
+  void remove(Contact contact) {
+    for (Field field: Field.values()) {
+      String key = field.key(contact);
+      if (!key.isEmpty()) {
+        NavigableMap<String, Set<Contact>> index = indexes.get(field);
+        Set<Contact> contacts = index.get(key);
+        if (contacts != null) {
+          contacts.remove(contact);
+          if (contacts.isEmpty()) {
+            index.remove(key);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the contacts whose key for the field is the provided key.
+   * @param field the field to be looked up.
+   * @param key the lower case key.
+   * @return the contacts with the key, in sorted order.
+   */
+
+  List<Contact> find(Field field, String key) {
+    Set<Contact> contacts = indexes.get(field).get(key);
+    if (contacts == null) {
+      return new ArrayList<Contact>();
+    }
+    return new ArrayList<Contact>(contacts);
+  }
+
+  /**
+   * Returns the contacts whose key for the field starts with the provided prefix.
+   * @param field the field to be looked up.
+   * @param prefix the lower case prefix; must not be empty.
+   * @return the contacts whose key starts with the prefix, in sorted order.
+   */
+
+  List<Contact> findWithPrefix(Field field, String prefix) {
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    for (Map.Entry<String, Set<Contact>> entry:
+        indexes.get(field).tailMap(prefix, true).entrySet()) {
+      if (!entry.getKey().startsWith(prefix)) {
+        break;
+      }
+      matchingContacts.addAll(entry.getValue());
+    }
+    Collections.sort(matchingContacts);
+    return matchingContacts;
+  }
+}
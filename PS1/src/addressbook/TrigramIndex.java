@@ -0,0 +1,137 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@code TrigramIndex} class is an inverted index from every three character
+ * substring (trigram) of a Contact's lower case name, email, postal address and note
+ * to the set of Contacts containing it.
+ * <p>
+ * Any Contact with a field containing a search string also contains every trigram of
+ * that search string, so intersecting the posting sets of the search string's trigrams
+ * gives a small superset of the matching Contacts. Candidates must still be verified
+ * against the search string, since the trigrams may come from different fields or
+ * positions.
+ * <p>
+ * Search strings shorter than three characters cannot be answered by the index.
+ * <p>
+ * {@code TrigramIndex} is used internally by {@code AddressBook} and is not thread-safe.
+ * @author Eric
+ * @see AddressBook
+ *
+ */
+
+final class TrigramIndex {
+  static final int GRAM_LENGTH = 3;
+
+  private final Map<String, Set<Contact>> postings = new HashMap<String, Set<Contact>>();
+
+  /**
+   * Adds every trigram of the searchable fields of the provided contact to the index.
+   * @param contact the contact to be indexed.
+   */
+
+  void add(Contact contact) {
+    for (String field: searchableFields(contact)) {
+      for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+        String gram = field.substring(i, i + GRAM_LENGTH);
+        Set<Contact> contacts = postings.get(gram);
+        if (contacts == null) {
+          contacts = new HashSet<Contact>();
+          postings.put(gram, contacts);
+        }
+        contacts.add(contact);
+      }
+    }
+  }
+
+  /**
+   * Removes the provided contact from the posting set of each of its trigrams.
+   * Posting sets that become empty are dropped.
+   * @param contact the contact to be removed from the index.
+   */
+
+  void remove(Contact contact) {
+    for (String field: searchableFields(contact)) {
+      for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+        String gram = field.substring(i, i + GRAM_LENGTH);
+        Set<Contact> contacts = postings.get(gram);
+        if (contacts != null) {
+          contacts.remove(contact);
+          if (contacts.isEmpty()) {
+            postings.remove(gram);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns true if the provided lower case search string is long enough to be
+   * answered by the index.
+   * @param lowerCaseSearchString the lower case search string.
+   * @return true if {@code candidates} can be used for the search string.
+   */
+
+  static boolean canSearch(String lowerCaseSearchString) {
+    return lowerCaseSearchString.length() >= GRAM_LENGTH;
+  }
+
+  /**
+   * Returns the contacts that contain every trigram of the provided lower case search
+   * string. The returned set is a superset of the contacts with a field containing the
+   * search string and must not be modified.
+   * @param lowerCaseSearchString the lower case search string, at least three characters
+   * long.
+   * @return the candidate contacts for the search string.
+   * @throws IllegalArgumentException if the search string is shorter than three characters.
+   */
+
+  Set<Contact> candidates(String lowerCaseSearchString) {
+    if (!canSearch(lowerCaseSearchString)) {
+      throw new IllegalArgumentException("search string must be at least "
+          + GRAM_LENGTH + " characters");
+    }
+    List<Set<Contact>> gramContacts = new ArrayList<Set<Contact>>();
+    Set<Contact> smallest = null;
+    for (int i = 0; i + GRAM_LENGTH <= lowerCaseSearchString.length(); i++) {
+      Set<Contact> contacts = postings.get(
+          lowerCaseSearchString.substring(i, i + GRAM_LENGTH));
+      if (contacts == null) {
+        return Collections.emptySet();
+      }
+      gramContacts.add(contacts);
+      if (smallest == null || contacts.size() < smallest.size()) {
+        smallest = contacts;
+      }
+    }
+    if (gramContacts.size() == 1) {
+      return Collections.unmodifiableSet(smallest);
+    }
+    Set<Contact> candidates = new HashSet<Contact>();
+    for (Contact contact: smallest) {
+      boolean inAll = true;
+      for (Set<Contact> contacts: gramContacts) {
+        if (contacts != smallest && !contacts.contains(contact)) {
+          inAll = false;
+          break;
+        }
+      }
+      if (inAll) {
+        candidates.add(contact);
+      }
+    }
+    return candidates;
+  }
+
+  private static String[] searchableFields(Contact contact) {
+    return new String[] {contact.getLowerCaseName(), contact.getLowerCaseEmail(),
+        contact.getLowerCasePostalAddress(), contact.getLowerCaseNote()};
+  }
+}
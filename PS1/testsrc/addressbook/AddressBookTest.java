@@ -0,0 +1,673 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AddressBookTest {
+  static final String ARABIC_INDIC_DIGITS = "\u0661\u0669\u0661\u0667";
+  AddressBook addressbook;
+  Random random;
+  File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    addressbook = new AddressBook();
+    random = TestContacts.newRandom();
+    for (int i = 0; i < 2000; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    directory = File.createTempFile("contacts", "");
+    directory.delete();
+    directory.mkdir();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file: directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testSearchContactsList_matchesScanAfterRandomChanges() {
+    for (int step = 0; step < 500; step++) {
+      applyRandomChange();
+      if (step % 50 == 0) {
+        for (int i = 0; i < 20; i++) {
+          String search = randomSearch();
+          assertEquals(search, scan(search), addressbook.searchContactsList(search));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testChanges_matchSortedListModel() {
+    List<Contact> model = new ArrayList<Contact>(addressbook.getUnmodifiableContactsList());
+    List<Contact> view = addressbook.getUnmodifiableContactsList();
+    for (int step = 0; step < 2000; step++) {
+      int operation = random.nextInt(4);
+      if (operation == 0 || model.isEmpty()) {
+        /* Few distinct values, so that some contacts are already present */
+        Contact contact = TestContacts.randomContact(random, 4);
+        boolean added = !model.contains(contact);
+        if (added) {
+          model.add(contact);
+          Collections.sort(model);
+        }
+        assertEquals(added, addressbook.addContact(contact));
+      } else if (operation == 1) {
+        List<Contact> batch = new ArrayList<Contact>();
+        for (int i = random.nextInt(20); i >= 0; i--) {
+          batch.add(TestContacts.randomContact(random, 4));
+        }
+        List<Contact> rejected = new ArrayList<Contact>();
+        for (Contact contact: batch) {
+          if (model.contains(contact)) {
+            rejected.add(contact);
+          } else {
+            model.add(contact);
+          }
+        }
+        Collections.sort(model);
+        List<Contact> actualRejected = addressbook.addContacts(batch);
+        Collections.sort(rejected);
+        Collections.sort(actualRejected);
+        assertEquals(rejected, actualRejected);
+      } else if (operation == 2) {
+        Contact contact = random.nextBoolean() ? model.get(random.nextInt(model.size()))
+            : TestContacts.randomContact(random, 4);
+        assertEquals(model.remove(contact), addressbook.removeContact(contact));
+      } else {
+        int index = random.nextInt(model.size());
+        assertEquals(model.remove(index), addressbook.removeContactAtIndex(index));
+      }
+      assertEquals(model, addressbook.getUnmodifiableContactsList());
+    }
+    /* Views stay attached to the list as it changes */
+    assertEquals(model, view);
+  }
+
+  @Test
+  public void testSearchContactsPage_pagesMatchScan() {
+    for (int i = 0; i < 50; i++) {
+      String search = randomSearch();
+      int limit = 1 + random.nextInt(100);
+      List<Contact> paged = new ArrayList<Contact>();
+      ContactsPage page = addressbook.searchContactsPage(search, null, limit);
+      while (true) {
+        assertTrue(page.getContacts().size() <= limit);
+        paged.addAll(page.getContacts());
+        if (!page.hasMore()) {
+          break;
+        }
+        assertEquals(limit, page.getContacts().size());
+        page = addressbook.searchContactsPage(search, page.getCursor(), limit);
+      }
+      assertEquals(search, scan(search), paged);
+    }
+  }
+
+  @Test
+  public void testSearchContactsPage_changesBetweenPages() {
+    for (int i = 0; i < 50; i++) {
+      String search = randomSearch();
+      List<Contact> before = scan(search);
+      List<Contact> paged = new ArrayList<Contact>();
+      ContactsPage page = addressbook.searchContactsPage(search, null, 20);
+      paged.addAll(page.getContacts());
+      while (page.hasMore()) {
+        applyRandomChange();
+        page = addressbook.searchContactsPage(search, page.getCursor(), 20);
+        paged.addAll(page.getContacts());
+      }
+      /* In sorted order, so nothing was repeated */
+      for (int j = 1; j < paged.size(); j++) {
+        assertTrue(paged.get(j - 1).compareTo(paged.get(j)) < 0);
+      }
+      /* Nothing that matched throughout was skipped */
+      Set<Contact> kept = new HashSet<Contact>(before);
+      kept.retainAll(new HashSet<Contact>(scan(search)));
+      assertTrue(search, new HashSet<Contact>(paged).containsAll(kept));
+    }
+  }
+
+  @Test
+  public void testSearchContactsList_parallelMatchesScan() {
+    List<Contact> batch = new ArrayList<Contact>();
+    for (int i = 0; i < AddressBook.PARALLEL_SEARCH_THRESHOLD + 10000; i++) {
+      batch.add(TestContacts.randomContact(random));
+    }
+    addressbook.addContacts(batch);
+    assertTrue(addressbook.getUnmodifiableContactsList().size()
+        >= AddressBook.PARALLEL_SEARCH_THRESHOLD);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      addressbook.enableParallelSearch(executor);
+      /* Short searches scan every contact; "main" and "street" match every contact */
+      for (String search: new String[] {"e", "1", "+1", "main", "street", "MAIN ST"}) {
+        assertEquals(search, scan(search), addressbook.searchContactsList(search));
+      }
+      for (int i = 0; i < 20; i++) {
+        applyRandomChange();
+        String search = randomSearch();
+        assertEquals(search, scan(search), addressbook.searchContactsList(search));
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testSearchContactsByPhoneNumber_matchesScan() {
+    for (int step = 0; step < 300; step++) {
+      applyRandomChange();
+      List<Contact> contacts = addressbook.getUnmodifiableContactsList();
+      String digits = contacts.get(random.nextInt(contacts.size())).getPhoneNumber()
+          .replace(" ", "");
+      digits = digits.substring(0, 1 + random.nextInt(digits.length()));
+      List<Contact> expected = new ArrayList<Contact>();
+      for (Contact contact: contacts) {
+        if (contact.getPhoneNumber().replace(" ", "").startsWith(digits)) {
+          expected.add(contact);
+        }
+      }
+      assertEquals(digits, expected, addressbook.searchContactsByPhoneNumber(digits));
+      assertEquals(digits, expected,
+          addressbook.searchContactsByPhoneNumber("+" + digits.replaceAll("(..)", "$1-")));
+    }
+  }
+
+  @Test
+  public void testSearchContactsList_digitsMatchScan() {
+    for (int step = 0; step < 300; step++) {
+      applyRandomChange();
+      StringBuilder digits = new StringBuilder();
+      for (int i = random.nextInt(7); i >= 0; i--) {
+        digits.append(random.nextInt(10));
+      }
+      for (String search: new String[] {digits.toString(), "(" + digits, "+" + digits}) {
+        assertEquals(search, scan(search), addressbook.searchContactsList(search));
+      }
+    }
+  }
+
+  @Test
+  public void testSearch_nonAsciiDigitsMatchNoPhoneNumber() {
+    Contact noted = new Contact.Builder("Eric", "1", "917", "3334444")
+        .note("Room " + ARABIC_INDIC_DIGITS).build();
+    addressbook.addContact(noted);
+    for (String search: new String[] {ARABIC_INDIC_DIGITS, "1" + ARABIC_INDIC_DIGITS,
+        "+" + ARABIC_INDIC_DIGITS, "\u0661", "\uff11\uff19\uff11\uff17"}) {
+      assertEquals(search, scan(search), addressbook.searchContactsList(search));
+      assertEquals(search, scan(search),
+          addressbook.searchContactsPage(search, null, 10000).getContacts());
+      assertEquals(search, scan(search).size(),
+          addressbook.searchTopContacts(search, 10000).size());
+      assertTrue(search, addressbook.searchContactsByPhoneNumber(search).isEmpty());
+    }
+    assertEquals(1, addressbook.searchContactsList(ARABIC_INDIC_DIGITS).size());
+  }
+
+  @Test
+  public void testSaveAddressBookToFile_roundTrip() throws IOException, ParseException {
+    AddressBook encodable = inDefaultCharset(addressbook);
+    File file = new File(directory, "contacts.json");
+    encodable.saveAddressBookToFile(file.getPath());
+    /* Replaces the previous file */
+    encodable.removeContactAtIndex(0);
+    encodable.saveAddressBookToFile(file.getPath());
+    AddressBook read = new AddressBook();
+    read.readAddressBookFromFile(file.getPath());
+    assertEquals(TestContacts.readBack(encodable.getUnmodifiableContactsList()),
+        read.getUnmodifiableContactsList());
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void testSaveAddressBookToFileStreaming_roundTrip()
+      throws IOException, ParseException {
+    File file = new File(directory, "contacts.json");
+    addressbook.saveAddressBookToFileStreaming(file.getPath());
+    for (int i = 0; i < 50; i++) {
+      applyRandomChange();
+    }
+    addressbook.saveAddressBookToFileStreaming(file.getPath());
+    AddressBook read = new AddressBook();
+    read.readAddressBookFromFileStreaming(file.getPath());
+    assertEquals(TestContacts.readBack(addressbook.getUnmodifiableContactsList()),
+        read.getUnmodifiableContactsList());
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void testSaveAddressBookToFileStreaming_emptyRoundTrip()
+      throws IOException, ParseException {
+    List<Contact> contacts =
+        new ArrayList<Contact>(addressbook.getUnmodifiableContactsList());
+    File file = new File(directory, "contacts.json");
+    new AddressBook().saveAddressBookToFileStreaming(file.getPath());
+    addressbook.readAddressBookFromFileStreaming(file.getPath());
+    assertEquals(contacts, addressbook.getUnmodifiableContactsList());
+  }
+
+  @Test
+  public void testSaveAddressBookToFileAsync_savesContactsAtCall()
+      throws IOException, ParseException, InterruptedException, ExecutionException {
+    AddressBook encodable = inDefaultCharset(addressbook);
+    File file = new File(directory, "contacts.json");
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    List<Contact> expected = null;
+    for (int i = 0; i < 20; i++) {
+      expected = new ArrayList<Contact>(encodable.getUnmodifiableContactsList());
+      futures.add(encodable.saveAddressBookToFileAsync(file.getPath()));
+      /* Changed while the save may still be running */
+      encodable.removeContactAtIndex(random.nextInt(expected.size()));
+      encodable.addContact(expected.get(random.nextInt(expected.size())));
+    }
+    for (Future<Void> future: futures) {
+      future.get();
+    }
+    /* The saves run in order, so the last one's contacts are in the file */
+    AddressBook read = new AddressBook();
+    read.readAddressBookFromFile(file.getPath());
+    assertEquals(TestContacts.readBack(expected), read.getUnmodifiableContactsList());
+    SaveStatistics statistics = encodable.getSaveStatistics();
+    assertEquals(0, statistics.getQueueDepth());
+    assertEquals(20, statistics.getCompletedSaves() + statistics.getCoalescedSaves());
+    assertEquals(0, statistics.getFailedSaves());
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void testSaveAddressBookToFileAsync_failureCompletesFuture()
+      throws InterruptedException {
+    File file = new File(new File(directory, "missing"), "contacts.json");
+    Future<Void> future = addressbook.saveAddressBookToFileAsync(file.getPath());
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    assertEquals(1, addressbook.getSaveStatistics().getFailedSaves());
+  }
+
+  @Test
+  public void testReadAddressBookFromFile_parallelMatchesSequential()
+      throws IOException, ParseException {
+    /* Enough contacts for several chunks */
+    List<Contact> batch = new ArrayList<Contact>();
+    for (int i = 0; i < 20000; i++) {
+      batch.add(TestContacts.randomContact(random));
+    }
+    addressbook.addContacts(batch);
+    File file = new File(directory, "contacts.json");
+    inDefaultCharset(addressbook).saveAddressBookToFile(file.getPath());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      AddressBook sequential = new AddressBook();
+      sequential.readAddressBookFromFile(file.getPath());
+      AddressBook parallel = new AddressBook();
+      parallel.readAddressBookFromFile(file.getPath(), executor);
+      assertEquals(sequential.getUnmodifiableContactsList(),
+          parallel.getUnmodifiableContactsList());
+      /* Contacts already in the Address Book are skipped */
+      for (int i = 0; i < 10; i++) {
+        applyRandomChange();
+      }
+      AddressBook expected = new AddressBook();
+      expected.addContacts(addressbook.getUnmodifiableContactsList());
+      expected.readAddressBookFromFile(file.getPath());
+      addressbook.readAddressBookFromFile(file.getPath(), executor);
+      assertEquals(expected.getUnmodifiableContactsList(),
+          addressbook.getUnmodifiableContactsList());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testObserver_copyStaysUpToDate() {
+    final List<Contact> copy =
+        new ArrayList<Contact>(addressbook.getUnmodifiableContactsList());
+    final long[] version = {addressbook.getVersion()};
+    AddressBookObserver observer = new AddressBookObserver() {
+      @Override
+      public void contactAdded(Contact contact, long changeVersion) {
+        assertEquals(++version[0], changeVersion);
+        apply(copy, ContactChange.Type.ADDED, contact);
+      }
+
+      @Override
+      public void contactRemoved(Contact contact, long changeVersion) {
+        assertEquals(++version[0], changeVersion);
+        apply(copy, ContactChange.Type.REMOVED, contact);
+      }
+    };
+    addressbook.registerObserver(observer);
+    for (int step = 0; step < 1000; step++) {
+      applyRandomChange();
+    }
+    assertEquals(addressbook.getVersion(), version[0]);
+    assertEquals(addressbook.getUnmodifiableContactsList(), copy);
+    addressbook.removeObserver(observer);
+    applyRandomChange();
+    assertEquals(version[0], addressbook.getVersion() - 1);
+  }
+
+  @Test
+  public void testGetChangesSince_replaysOntoCopy() {
+    List<List<Contact>> copies = new ArrayList<List<Contact>>();
+    List<Long> versions = new ArrayList<Long>();
+    /* Few enough changes that every one of them is still held */
+    for (int step = 0; step < 500; step++) {
+      if (step % 50 == 0) {
+        copies.add(new ArrayList<Contact>(addressbook.getUnmodifiableContactsList()));
+        versions.add(addressbook.getVersion());
+      }
+      applyRandomChange();
+    }
+    for (int i = 0; i < copies.size(); i++) {
+      List<Contact> copy = copies.get(i);
+      long version = versions.get(i);
+      for (ContactChange change: addressbook.getChangesSince(version)) {
+        assertEquals(++version, change.getVersion());
+        apply(copy, change.getType(), change.getContact());
+      }
+      assertEquals(addressbook.getVersion(), version);
+      assertEquals(addressbook.getUnmodifiableContactsList(), copy);
+    }
+    assertTrue(addressbook.getChangesSince(addressbook.getVersion()).isEmpty());
+  }
+
+  @Test
+  public void testGetChangesSince_nullOnceChangesAreDropped() {
+    long version = addressbook.getVersion();
+    while (addressbook.getVersion() - version <= AddressBook.CHANGE_FEED_CAPACITY) {
+      applyRandomChange();
+    }
+    assertEquals(null, addressbook.getChangesSince(version));
+    assertEquals(AddressBook.CHANGE_FEED_CAPACITY, addressbook.getChangesSince(
+        addressbook.getVersion() - AddressBook.CHANGE_FEED_CAPACITY).size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGetChangesSince_futureVersion() {
+    addressbook.getChangesSince(addressbook.getVersion() + 1);
+  }
+
+  @Test
+  public void testSearchContactsByNameFuzzy_matchesScan() {
+    for (int step = 0; step < 300; step++) {
+      applyRandomChange();
+      if (step % 10 == 0) {
+        String name = misspell(TestContacts.randomContact(random).getName());
+        int maxDistance = random.nextInt(4);
+        List<Contact> expected = new ArrayList<Contact>();
+        for (Contact contact: addressbook.getUnmodifiableContactsList()) {
+          if (editDistance(contact.getName().toLowerCase(), name.toLowerCase())
+              <= maxDistance) {
+            expected.add(contact);
+          }
+        }
+        assertEquals(name + " " + maxDistance, expected,
+            addressbook.searchContactsByNameFuzzy(name, maxDistance));
+      }
+    }
+    assertTrue(addressbook.searchContactsByNameFuzzy(null, 2).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSearchContactsByNameFuzzy_negativeDistance() {
+    addressbook.searchContactsByNameFuzzy("Eric", -1);
+  }
+
+  @Test
+  public void testFindDuplicateContacts_matchesPairwiseScan() {
+    int clusters = 0;
+    for (int round = 0; round < 20; round++) {
+      /* Few phone numbers and emails, so contacts share them, but in blocks small
+       * enough that the finder compares every pair */
+      AddressBook small = new AddressBook();
+      while (small.getUnmodifiableContactsList().size() < 150) {
+        small.addContact(TestContacts.randomContact(random, 60));
+      }
+      List<Contact> contacts = small.getUnmodifiableContactsList();
+      for (int maxDistance = 0; maxDistance < 4; maxDistance++) {
+        List<List<Contact>> expected = findDuplicatesPairwise(contacts, maxDistance);
+        assertEquals(expected, small.findDuplicateContacts(maxDistance));
+        clusters += expected.size();
+      }
+    }
+    assertTrue(clusters > 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFindDuplicateContacts_negativeDistance() {
+    addressbook.findDuplicateContacts(-1);
+  }
+
+  /**
+   * Adds a contact, adds a batch of contacts that may repeat existing ones, or removes a
+   * contact by value or by index.
+   */
+
+  private void applyRandomChange() {
+    List<Contact> contacts = addressbook.getUnmodifiableContactsList();
+    int operation = random.nextInt(4);
+    if (operation == 0 || contacts.isEmpty()) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    } else if (operation == 1) {
+      List<Contact> batch = new ArrayList<Contact>();
+      for (int i = 0; i < 10; i++) {
+        batch.add(random.nextInt(5) == 0 ? contacts.get(random.nextInt(contacts.size()))
+            : TestContacts.randomContact(random));
+      }
+      addressbook.addContacts(batch);
+    } else if (operation == 2) {
+      addressbook.removeContact(contacts.get(random.nextInt(contacts.size())));
+    } else {
+      addressbook.removeContactAtIndex(random.nextInt(contacts.size()));
+    }
+  }
+
+  /**
+   * Returns a search string: a piece of a field of a random contact, in random case, or
+   * a phone number search built from its digits.
+   */
+
+  private String randomSearch() {
+    Contact contact = TestContacts.randomContact(random);
+    String[] fields = {contact.getName(), contact.getEmail(), contact.getPostalAddress(),
+        contact.getNote(), contact.getPhoneNumber()};
+    String field = fields[random.nextInt(fields.length)];
+    if (field.isEmpty()) {
+      return "x";
+    }
+    int start = random.nextInt(field.length());
+    int end = Math.min(field.length(), start + 1 + random.nextInt(6));
+    String search = field.substring(start, end);
+    if (random.nextBoolean()) {
+      search = search.toUpperCase();
+    }
+    if (random.nextInt(4) == 0) {
+      search = "+" + search.replace(' ', '-');
+    }
+    return search;
+  }
+
+  /**
+   * Applies a change to a sorted copy of the contacts.
+   */
+
+  private static void apply(List<Contact> copy, ContactChange.Type type,
+      Contact contact) {
+    int index = Collections.binarySearch(copy, contact);
+    if (type == ContactChange.Type.ADDED) {
+      assertTrue(index < 0);
+      copy.add(-index - 1, contact);
+    } else {
+      assertTrue(index >= 0);
+      copy.remove(index);
+    }
+  }
+
+  /**
+   * Returns the name with up to three random characters inserted, deleted or replaced.
+   */
+
+  private String misspell(String name) {
+    StringBuilder misspelled = new StringBuilder(name);
+    for (int i = random.nextInt(4); i > 0; i--) {
+      int index = random.nextInt(misspelled.length() + 1);
+      int edit = random.nextInt(3);
+      if (edit == 0 || index == misspelled.length()) {
+        misspelled.insert(index, (char) ('a' + random.nextInt(26)));
+      } else if (edit == 1) {
+        misspelled.deleteCharAt(index);
+      } else {
+        misspelled.setCharAt(index, (char) ('a' + random.nextInt(26)));
+      }
+    }
+    return misspelled.toString();
+  }
+
+  /**
+   * Returns the Levenshtein distance between two strings, by the textbook dynamic
+   * programming over the full table.
+   */
+
+  private static int editDistance(String a, String b) {
+    int[][] distances = new int[a.length() + 1][b.length() + 1];
+    for (int i = 0; i <= a.length(); i++) {
+      distances[i][0] = i;
+    }
+    for (int j = 0; j <= b.length(); j++) {
+      distances[0][j] = j;
+    }
+    for (int i = 1; i <= a.length(); i++) {
+      for (int j = 1; j <= b.length(); j++) {
+        int substitution = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+        distances[i][j] = Math.min(distances[i - 1][j - 1] + substitution,
+            Math.min(distances[i - 1][j], distances[i][j - 1]) + 1);
+      }
+    }
+    return distances[a.length()][b.length()];
+  }
+
+  /**
+   * Finds the clusters of likely duplicates by comparing every pair of contacts, and
+   * checks that no phone number or email is shared by more contacts than the finder
+   * compares in full.
+   */
+
+  private static List<List<Contact>> findDuplicatesPairwise(List<Contact> contacts,
+      int maxDistance) {
+    int[] cluster = new int[contacts.size()];
+    for (int i = 0; i < cluster.length; i++) {
+      cluster[i] = i;
+    }
+    for (int i = 0; i < contacts.size(); i++) {
+      Contact first = contacts.get(i);
+      String email = first.getEmail().toLowerCase().trim();
+      /* The phone number and email blocks of the first contact of a block hold it and
+       * every contact after it */
+      int phoneNumberBlock = 1;
+      int emailBlock = 1;
+      for (int j = i + 1; j < contacts.size(); j++) {
+        Contact second = contacts.get(j);
+        boolean sharesPhoneNumber = (int) first.getPhoneNumberKey() != 0
+            && first.getPhoneNumberKey() == second.getPhoneNumberKey();
+        boolean sharesEmail = !email.isEmpty()
+            && email.equals(second.getEmail().toLowerCase().trim());
+        phoneNumberBlock += sharesPhoneNumber ? 1 : 0;
+        emailBlock += sharesEmail ? 1 : 0;
+        if (sharesPhoneNumber || sharesEmail) {
+          if (editDistance(first.getName().toLowerCase(), second.getName().toLowerCase())
+              <= maxDistance) {
+            /* Relabel the second cluster; quadratic, but the lists are small */
+            int from = cluster[j];
+            for (int k = 0; k < cluster.length; k++) {
+              if (cluster[k] == from) {
+                cluster[k] = cluster[i];
+              }
+            }
+          }
+        }
+      }
+      assertTrue(phoneNumberBlock <= DuplicateContactFinder.WINDOW + 1);
+      assertTrue(emailBlock <= DuplicateContactFinder.WINDOW + 1);
+    }
+    List<List<Contact>> clusters = new ArrayList<List<Contact>>();
+    for (int i = 0; i < cluster.length; i++) {
+      List<Contact> members = new ArrayList<Contact>();
+      boolean first = true;
+      for (int j = 0; j < cluster.length; j++) {
+        if (cluster[j] == cluster[i]) {
+          first &= j >= i;
+          members.add(contacts.get(j));
+        }
+      }
+      if (first && members.size() > 1) {
+        clusters.add(members);
+      }
+    }
+    return clusters;
+  }
+
+  /**
+   * Returns a new Address Book of the contacts whose fields the default charset can
+   * encode, since {@code saveAddressBookToFile} writes in the default charset.
+   */
+
+  private static AddressBook inDefaultCharset(AddressBook addressbook) {
+    AddressBook encodable = new AddressBook();
+    encodable.addContacts(
+        TestContacts.inDefaultCharset(addressbook.getUnmodifiableContactsList()));
+    return encodable;
+  }
+
+  /**
+   * Searches the contacts as the Address Book did before it had search indexes, by
+   * checking every field of every contact in sorted order.
+   */
+
+  private List<Contact> scan(String searchString) {
+    List<Contact> matchingContacts = new ArrayList<Contact>();
+    String lowerCaseSearchString = searchString.toLowerCase();
+    char firstChar = searchString.charAt(0);
+    String number = "";
+    if (Character.isDigit(firstChar) || firstChar == '+' || firstChar == '(') {
+      number = Contact.parseStringToNumberString(searchString);
+    }
+    for (Contact contact: addressbook.getUnmodifiableContactsList()) {
+      if ((!number.isEmpty() && contact.getPhoneNumber().contains(number))
+          || contact.getName().toLowerCase().contains(lowerCaseSearchString)
+          || contact.getEmail().toLowerCase().contains(lowerCaseSearchString)
+          || contact.getPostalAddress().toLowerCase().contains(lowerCaseSearchString)
+          || contact.getNote().toLowerCase().contains(lowerCaseSearchString)) {
+        matchingContacts.add(contact);
+      }
+    }
+    return matchingContacts;
+  }
+}
@@ -0,0 +1,138 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarAddressBookTest {
+  static final String[] SEARCHES = {"e", "ER", "eri", "\u00e9", "\u00c9L", "m\u00fc",
+      "STRASSE", "\u00df", "\u0130", "i", "\u212a", "k", "1", "12", "+1 2", "(3", "45", "0",
+      "main st", "@nyu", " ", "de"};
+  AddressBook addressbook;
+  ColumnarAddressBook columnar;
+  Random random;
+  File temp;
+
+  @Before
+  public void setUp() throws IOException {
+    addressbook = new AddressBook();
+    columnar = new ColumnarAddressBook();
+    random = TestContacts.newRandom();
+    temp = File.createTempFile("contacts", ".snapshot");
+  }
+
+  @After
+  public void tearDown() {
+    temp.delete();
+  }
+
+  @Test
+  public void testColumnar_matchesAddressBookAfterRandomChanges() {
+    for (int step = 0; step < 300; step++) {
+      List<Contact> contacts = addressbook.getUnmodifiableContactsList();
+      int operation = random.nextInt(4);
+      if (operation == 0 || contacts.isEmpty()) {
+        Contact contact = TestContacts.randomContact(random);
+        assertEquals(addressbook.addContact(contact), columnar.addContact(contact));
+      } else if (operation == 1) {
+        List<Contact> batch = new ArrayList<Contact>();
+        for (int i = 0; i < 40; i++) {
+          batch.add(random.nextInt(10) == 0 ? contacts.get(random.nextInt(contacts.size()))
+              : TestContacts.randomContact(random));
+        }
+        assertEquals(addressbook.addContacts(batch), columnar.addContacts(batch));
+      } else if (operation == 2) {
+        Contact contact = contacts.get(random.nextInt(contacts.size()));
+        assertEquals(addressbook.removeContact(contact), columnar.removeContact(contact));
+      } else {
+        int index = random.nextInt(contacts.size());
+        assertEquals(addressbook.removeContactAtIndex(index),
+            columnar.removeContactAtIndex(index));
+      }
+      assertEquals(addressbook.getUnmodifiableContactsList(),
+          columnar.getUnmodifiableContactsList());
+    }
+    for (String search: SEARCHES) {
+      assertEquals(search, addressbook.searchContactsList(search),
+          columnar.searchContactsList(search));
+    }
+  }
+
+  @Test
+  public void testAddContacts_appendsAndMergesChunks() {
+    List<Contact> contacts = new ArrayList<Contact>();
+    for (int i = 0; i < 5000; i++) {
+      contacts.add(TestContacts.randomContact(random));
+    }
+    Collections.sort(contacts);
+    /* Ascending chunks are appended; the shuffled ones overlap and are merged */
+    for (int start = 0; start < 3000; start += 500) {
+      addBoth(contacts.subList(start, start + 500));
+    }
+    List<Contact> rest = new ArrayList<Contact>(contacts.subList(3000, 5000));
+    Collections.shuffle(rest, random);
+    for (int start = 0; start < rest.size(); start += 500) {
+      addBoth(rest.subList(start, start + 500));
+    }
+    assertEquals(addressbook.getUnmodifiableContactsList(),
+        columnar.getUnmodifiableContactsList());
+  }
+
+  @Test
+  public void testRemove_compactsColumns() {
+    for (int i = 0; i < 3000; i++) {
+      addBoth(Collections.singletonList(TestContacts.randomContact(random)));
+    }
+    long footprint = columnar.getOffHeapBytes();
+    while (addressbook.getUnmodifiableContactsList().size() > 100) {
+      int index = random.nextInt(addressbook.getUnmodifiableContactsList().size());
+      assertEquals(addressbook.removeContactAtIndex(index),
+          columnar.removeContactAtIndex(index));
+    }
+    assertTrue(columnar.getOffHeapBytes() < footprint);
+    assertEquals(addressbook.getUnmodifiableContactsList(),
+        columnar.getUnmodifiableContactsList());
+  }
+
+  @Test
+  public void testSnapshot_roundTrip() throws IOException {
+    for (int i = 0; i < 10000; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    columnar.readAddressBookFromSnapshot(temp.getAbsolutePath());
+    assertEquals(addressbook.getUnmodifiableContactsList(),
+        columnar.getUnmodifiableContactsList());
+    columnar.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    AddressBook read = new AddressBook();
+    read.readAddressBookFromSnapshot(temp.getAbsolutePath());
+    assertEquals(addressbook.getUnmodifiableContactsList(), read.getUnmodifiableContactsList());
+  }
+
+  @Test(expected = IOException.class)
+  public void testSnapshot_rejectsImpossibleCount() throws IOException {
+    addressbook.addContact(TestContacts.randomContact(random));
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    RandomAccessFile file = new RandomAccessFile(temp, "rw");
+    try {
+      file.seek(8);
+      file.writeInt(Integer.MAX_VALUE);
+    } finally {
+      file.close();
+    }
+    columnar.readAddressBookFromSnapshot(temp.getAbsolutePath());
+  }
+
+  private void addBoth(List<Contact> contacts) {
+    assertEquals(addressbook.addContacts(contacts), columnar.addContacts(contacts));
+  }
+}
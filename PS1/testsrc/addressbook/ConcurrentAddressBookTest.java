@@ -0,0 +1,311 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.simple.parser.ParseException;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentAddressBookTest {
+  static final int THREADS = 4;
+  static final String[] SEARCHES = {"e", "er", "eric", "ANNA", "nyu", "\u00fc", "paris",
+      "new york", "1", "12", "+1 2", "(3", "456"};
+  ConcurrentAddressBook concurrent;
+  Random random;
+  List<Contact> contacts;
+  File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    concurrent = new ConcurrentAddressBook();
+    random = TestContacts.newRandom();
+    Set<Contact> distinct = new LinkedHashSet<Contact>();
+    while (distinct.size() < 4000) {
+      distinct.add(TestContacts.randomContact(random));
+    }
+    contacts = new ArrayList<Contact>(distinct);
+    directory = File.createTempFile("contacts", "");
+    directory.delete();
+    directory.mkdir();
+  }
+
+  @After
+  public void tearDown() {
+    for (File file: directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void testConcurrentChanges_matchAddressBook() throws InterruptedException {
+    final AddressBook expected = new AddressBook();
+    for (int i = 0; i < contacts.size(); i++) {
+      if (i % 3 != 0) {
+        expected.addContact(contacts.get(i));
+      }
+    }
+    runThreads(new Body() {
+      @Override
+      public void run(int thread) {
+        for (int i = thread; i < contacts.size(); i += THREADS) {
+          assertTrue(concurrent.addContact(contacts.get(i)));
+          if (i % 50 == 0) {
+            concurrent.searchContactsList(SEARCHES[i % SEARCHES.length]);
+          }
+        }
+        for (int i = thread; i < contacts.size(); i += THREADS) {
+          if (i % 3 == 0) {
+            assertTrue(concurrent.removeContact(contacts.get(i)));
+          }
+        }
+      }
+    });
+    assertEquals(expected.getUnmodifiableContactsList(),
+        concurrent.getUnmodifiableContactsList());
+    for (String search: SEARCHES) {
+      assertEquals(search, expected.searchContactsList(search),
+          concurrent.searchContactsList(search));
+    }
+  }
+
+  @Test
+  public void testRemoveContactAtIndex_removesEachContactOnce()
+      throws InterruptedException {
+    for (Contact contact: contacts) {
+      concurrent.addContact(contact);
+    }
+    final List<Contact> removed = Collections.synchronizedList(new ArrayList<Contact>());
+    runThreads(new Body() {
+      @Override
+      public void run(int thread) {
+        for (int i = 0; i < contacts.size() / THREADS; i++) {
+          removed.add(concurrent.removeContactAtIndex(0));
+        }
+      }
+    });
+    assertTrue(concurrent.getUnmodifiableContactsList().isEmpty());
+    assertEquals(contacts.size(), new LinkedHashSet<Contact>(removed).size());
+  }
+
+  @Test
+  public void testAddContact_rejectsDuplicatesAcrossThreads() throws InterruptedException {
+    final List<Boolean> added = Collections.synchronizedList(new ArrayList<Boolean>());
+    runThreads(new Body() {
+      @Override
+      public void run(int thread) {
+        for (Contact contact: contacts) {
+          added.add(concurrent.addContact(contact));
+        }
+      }
+    });
+    assertEquals(contacts.size(), Collections.frequency(added, true));
+    assertEquals(contacts.size(), concurrent.getUnmodifiableContactsList().size());
+  }
+
+  @Test
+  public void testSaveAddressBookToFile_savesEveryChangeAcrossThreads() throws Exception {
+    final File file = new File(directory, "contacts.json");
+    runThreads(new Body() {
+      @Override
+      public void run(int thread) throws IOException {
+        for (int i = thread; i < contacts.size(); i += THREADS) {
+          concurrent.addContact(contacts.get(i));
+          if (i % 100 < THREADS) {
+            concurrent.saveAddressBookToFile(file.getPath());
+          }
+        }
+        concurrent.saveAddressBookToFile(file.getPath());
+      }
+    });
+    /* The last save started once every thread had finished adding */
+    ConcurrentAddressBook read = new ConcurrentAddressBook();
+    read.readAddressBookFromFile(file.getPath());
+    assertEquals(TestContacts.readBack(concurrent.getUnmodifiableContactsList()),
+        read.getUnmodifiableContactsList());
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test
+  public void testGroupCommit_writeStartedAfterEachCommit() throws InterruptedException {
+    final AtomicLong clock = new AtomicLong();
+    final AtomicLong lastWriteStarted = new AtomicLong();
+    final AtomicInteger writes = new AtomicInteger();
+    final int commits = 20;
+    final GroupCommit save = new GroupCommit(new File(directory, "contacts").getPath(),
+        new AtomicFileWriter.Contents() {
+          @Override
+          public void writeTo(FileChannel channel) throws IOException {
+            long started = clock.incrementAndGet();
+            writes.incrementAndGet();
+            sleep(2);
+            lastWriteStarted.set(started);
+          }
+        });
+    runThreads(new Body() {
+      @Override
+      public void run(int thread) throws IOException {
+        for (int i = 0; i < commits; i++) {
+          long called = clock.incrementAndGet();
+          save.commit();
+          assertTrue(lastWriteStarted.get() > called);
+        }
+      }
+    });
+    assertTrue(writes.get() < THREADS * commits);
+    assertEquals(1, directory.listFiles().length);
+  }
+
+  @Test(timeout = 10000)
+  public void testGroupCommit_failureReachesEveryThread() throws InterruptedException {
+    final AtomicInteger failures = new AtomicInteger();
+    final int commits = 20;
+    final GroupCommit save = new GroupCommit(new File(directory, "contacts").getPath(),
+        new AtomicFileWriter.Contents() {
+          @Override
+          public void writeTo(FileChannel channel) throws IOException {
+            sleep(1);
+            throw new IOException("disk full");
+          }
+        });
+    runThreads(new Body() {
+      @Override
+      public void run(int thread) {
+        for (int i = 0; i < commits; i++) {
+          try {
+            save.commit();
+          } catch (IOException e) {
+            failures.incrementAndGet();
+          }
+        }
+      }
+    });
+    assertEquals(THREADS * commits, failures.get());
+    assertEquals(0, directory.listFiles().length);
+  }
+
+  @Test
+  public void testBackgroundSaver_savesLastContactsOfEachFile() throws Exception {
+    final BackgroundSaver saver = new BackgroundSaver();
+    final File shared = new File(directory, "shared.json");
+    final List<Contact> encodable = TestContacts.inDefaultCharset(contacts);
+    final List<List<Contact>> lastSaved = new ArrayList<List<Contact>>();
+    for (int t = 0; t < THREADS; t++) {
+      lastSaved.add(null);
+    }
+    final int saves = 50;
+    runThreads(new Body() {
+      @Override
+      public void run(int thread) throws Exception {
+        File own = new File(directory, "contacts" + thread + ".json");
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        List<Contact> saved = new ArrayList<Contact>();
+        for (int i = 0; i < saves; i++) {
+          saved = new ArrayList<Contact>(saved);
+          saved.add(encodable.get(i * THREADS + thread));
+          futures.add(saver.save(saved, own.getPath()));
+          futures.add(saver.save(saved, shared.getPath()));
+        }
+        for (Future<Void> future: futures) {
+          future.get();
+        }
+        lastSaved.set(thread, saved);
+      }
+    });
+    List<List<Contact>> expected = new ArrayList<List<Contact>>();
+    for (int t = 0; t < THREADS; t++) {
+      expected.add(TestContacts.readBack(lastSaved.get(t)));
+      assertEquals(expected.get(t),
+          readFile(new File(directory, "contacts" + t + ".json")));
+    }
+    /* The last thread to save the shared file saved its last contacts */
+    assertTrue(expected.contains(readFile(shared)));
+    SaveStatistics statistics = saver.getStatistics();
+    assertEquals(0, statistics.getQueueDepth());
+    assertEquals(0, statistics.getFailedSaves());
+    assertEquals(2 * THREADS * saves,
+        statistics.getCompletedSaves() + statistics.getCoalescedSaves());
+    assertEquals(THREADS + 1, directory.listFiles().length);
+  }
+
+  /**
+   * The work of one of the threads started by {@code runThreads}.
+   */
+
+  interface Body {
+    void run(int thread) throws Exception;
+  }
+
+  /**
+   * Runs the body on {@code THREADS} threads started together, and rethrows the first
+   * failure of any of them once all have finished.
+   */
+
+  private void runThreads(final Body body) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < THREADS; t++) {
+      final int thread = t;
+      threads.add(new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            body.run(thread);
+          } catch (Throwable e) {
+            failures.add(e);
+          }
+        }
+      });
+    }
+    for (Thread thread: threads) {
+      thread.start();
+    }
+    start.countDown();
+    for (Thread thread: threads) {
+      thread.join();
+    }
+    if (!failures.isEmpty()) {
+      throw new AssertionError(failures.get(0));
+    }
+  }
+
+  /**
+   * Reads the contacts of a file saved in the format of
+   * {@code AddressBook.saveAddressBookToFile}.
+   */
+
+  private static List<Contact> readFile(File file) throws IOException, ParseException {
+    AddressBook addressbook = new AddressBook();
+    addressbook.readAddressBookFromFile(file.getPath());
+    return addressbook.getUnmodifiableContactsList();
+  }
+
+  /**
+   * Sleeps inside a write, so that commits arrive while it is running.
+   */
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted", e);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package addressbook;
+
+import java.util.List;
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContactRankingTest {
+  AddressBook addressbook;
+  Contact eric;
+  Contact one;
+
+  @Before
+  public void setUp() {
+    addressbook = new AddressBook();
+    for (int i = 0; i < 50; i++) {
+      addressbook.addContact(new Contact.Builder("Person " + i, "1", "" + (200 + i),
+          "" + (1000000 + i)).build());
+    }
+    eric = new Contact.Builder("Eric Schmitterer", "1", "917", "3334444").build();
+    one = new Contact.Builder("1", "44", "20", "7946000").build();
+    addressbook.addContact(eric);
+    addressbook.addContact(one);
+  }
+
+  @Test
+  public void testSearchTopContacts_exactNameBeforeSinglePhoneField() {
+    List<Contact> top = addressbook.searchTopContacts("1", 3);
+    assertEquals(3, top.size());
+    assertEquals(one, top.get(0));
+  }
+
+  @Test
+  public void testSearchTopContacts_wholeNumberAsDigits() {
+    assertEquals(eric, addressbook.searchTopContacts("19173334444", 3).get(0));
+    assertEquals(eric, addressbook.searchTopContacts("+1 (917) 333-4444", 3).get(0));
+  }
+
+  @Test
+  public void testSearchTopContacts_includesEverySearchMatch() {
+    for (String search: new String[] {"1", "917", "person 1", "3334444", "20"}) {
+      List<Contact> top = addressbook.searchTopContacts(search, 1000);
+      assertTrue(search, top.containsAll(addressbook.searchContactsList(search)));
+    }
+  }
+
+  @Test
+  public void testScore_wholeNumberBeatsExactName() {
+    assertTrue(ContactRanking.score(eric, "19173334444", "19173334444")
+        > ContactRanking.score(one, "1", ""));
+    assertEquals(ContactRanking.PHONE_EXACT,
+        ContactRanking.score(eric, "19173334444", "19173334444"));
+    assertTrue(ContactRanking.score(eric, "917", "917") < ContactRanking.NAME_EXACT);
+  }
+}
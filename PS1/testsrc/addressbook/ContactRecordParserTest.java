@@ -0,0 +1,124 @@
+package addressbook;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+
+public class ContactRecordParserTest {
+  Random random;
+
+  @Before
+  public void setUp() {
+    random = new Random(18);
+  }
+
+  @Test
+  public void testParse_matchesSplitOnRandomRecords() {
+    String phoneNumberCharacters = "0123456789   \t-x\u0663";
+    for (int i = 0; i < 200000; i++) {
+      String[] record = {
+        randomString("ab \t", 3, 20),
+        randomString(phoneNumberCharacters, 16, 50),
+        randomString("e \t", 2, 20),
+        randomString("ab  \tc", 14, 50),
+        randomString("n \t", 2, 20)
+      };
+      if (random.nextInt(3) == 0) {
+        record[1] = random.nextInt(40000) + " " + random.nextInt(40000) + " "
+            + (random.nextBoolean() ? "" + random.nextInt(Integer.MAX_VALUE) : "9999999999");
+      }
+      assertEquals(Arrays.toString(record), describe(true, record), describe(false, record));
+    }
+  }
+
+  @Test
+  public void testParse_fieldsSeparatedByRunsOfSpaces() {
+    Contact contact = ContactRecordParser.parse("Eric", "1  917   3334444", "es3620@nyu.edu",
+        "140  East  64th  New York  NY", "note");
+    assertEquals(splitContact("Eric", "1  917   3334444", "es3620@nyu.edu",
+        "140  East  64th  New York  NY", "note").getPhoneNumber(), contact.getPhoneNumber());
+    assertEquals("1 917 3334444", contact.getPhoneNumber());
+  }
+
+  @Test
+  public void testParse_leadingSpaceGivesEmptyField() {
+    String[] record = {"Eric", " 1 917 3334444", "", "a b c d e f", ""};
+    assertEquals(describe(true, record), describe(false, record));
+  }
+
+  @Test
+  public void testParse_trailingSpacesGiveNoField() {
+    String[] record = {"Eric", "1 917 3334444   ", "", "a b c d e f  ", ""};
+    assertEquals(describe(true, record), describe(false, record));
+  }
+
+  @Test(expected = NumberFormatException.class)
+  public void testParse_numberTooLarge() {
+    ContactRecordParser.parse("Eric", "1 917 99999999999", "", "", "");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testParse_nullPhoneNumber() {
+    ContactRecordParser.parse("Eric", null, "", "", "");
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testParse_nullAddress() {
+    ContactRecordParser.parse("Eric", "1 917 3334444", "", null, "");
+  }
+
+  /**
+   * Builds a contact the way {@code AddressBook.buildContact} did before it used
+   * {@code ContactRecordParser}, splitting the fields with a regular expression.
+   */
+
+  private static Contact splitContact(String name, String phoneNumber, String email,
+      String address, String note) {
+    String delims = "[ ]+";
+    String[] numberTokens = phoneNumber.split(delims);
+    String[] addressTokens = address.split(delims);
+    Contact.Builder builder;
+    if (numberTokens.length == 3) {
+      builder = new Contact.Builder(name, numberTokens[0], numberTokens[1], numberTokens[2]);
+    } else {
+      builder = new Contact.Builder(name, "1", "000", "0000000");
+    }
+    if (addressTokens.length == 6) {
+      builder.postalAddress(addressTokens[0], addressTokens[1], addressTokens[2],
+          addressTokens[3], addressTokens[4], addressTokens[5]);
+    }
+    return builder.emailAddress(email).note(note).build();
+  }
+
+  /**
+   * Describes the contact built from a record, or the exception building it threw.
+   */
+
+  private static String describe(boolean split, String[] record) {
+    Contact contact;
+    try {
+      contact = split
+          ? splitContact(record[0], record[1], record[2], record[3], record[4])
+          : ContactRecordParser.parse(record[0], record[1], record[2], record[3], record[4]);
+    } catch (RuntimeException e) {
+      return e.getClass().getName();
+    }
+    return contact.getName() + "|" + contact.getPhoneNumber() + "|" + contact.getEmail()
+        + "|" + contact.getPostalAddress() + "|" + contact.getNote() + "|"
+        + contact.hashCode();
+  }
+
+  private String randomString(String characters, int maximumLength, int nullOneIn) {
+    if (random.nextInt(nullOneIn) == 0) {
+      return null;
+    }
+    int length = random.nextInt(maximumLength + 1);
+    StringBuilder string = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      string.append(characters.charAt(random.nextInt(characters.length())));
+    }
+    return string.toString();
+  }
+}
@@ -0,0 +1,89 @@
+package addressbook;
+
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+
+public class ContactTest {
+  Random random;
+
+  @Before
+  public void setUp() {
+    random = TestContacts.newRandom();
+  }
+
+  @Test
+  public void testPhoneNumberContains_matchesStringContains() {
+    for (int i = 0; i < 300000; i++) {
+      short countryCode = (short) (random.nextBoolean()
+          ? random.nextInt(10) : random.nextInt(Short.MAX_VALUE + 1));
+      short areaCode = (short) random.nextInt(Short.MAX_VALUE + 1);
+      int subscriberNumber = random.nextInt(4) == 0 ? random.nextInt(100)
+          : Integer.MAX_VALUE - random.nextInt(Integer.MAX_VALUE / 2);
+      String phoneNumber = countryCode + " " + areaCode + " " + subscriberNumber;
+      String digits = randomDigits(phoneNumber);
+      assertEquals(phoneNumber + " / " + digits, phoneNumber.contains(digits),
+          Contact.phoneNumberContains(countryCode, areaCode, subscriberNumber, digits));
+    }
+  }
+
+  @Test
+  public void testPhoneNumberContains_doesNotSpanFields() {
+    assertTrue(Contact.phoneNumberContains((short) 1, (short) 917, 3334444, "917"));
+    assertFalse(Contact.phoneNumberContains((short) 1, (short) 917, 3334444, "19"));
+    assertFalse(Contact.phoneNumberContains((short) 1, (short) 917, 3334444, "73"));
+  }
+
+  @Test
+  public void testCompareTo_ordersPhoneNumbersNumerically() {
+    Contact shorter = new Contact.Builder("Eric", "2", "917", "3334444").build();
+    Contact longer = new Contact.Builder("Eric", "10", "917", "3334444").build();
+    assertTrue(shorter.compareTo(longer) < 0);
+    assertTrue(longer.compareTo(shorter) > 0);
+    Contact smallAreaCode = new Contact.Builder("Eric", "1", "99", "3334444").build();
+    Contact largeAreaCode = new Contact.Builder("Eric", "1", "100", "0").build();
+    assertTrue(smallAreaCode.compareTo(largeAreaCode) < 0);
+  }
+
+  @Test
+  public void testCompareTo_consistentWithEquals() {
+    for (int i = 0; i < 10000; i++) {
+      /* Few distinct field values, so that many pairs are equal */
+      int variety = 1 + random.nextInt(2);
+      Contact first = TestContacts.randomContact(random, variety);
+      Contact second = TestContacts.randomContact(random, variety);
+      assertEquals(first.equals(second), first.compareTo(second) == 0);
+      assertEquals(Integer.signum(first.compareTo(second)),
+          -Integer.signum(second.compareTo(first)));
+      if (first.equals(second)) {
+        assertEquals(first.hashCode(), second.hashCode());
+      }
+    }
+  }
+
+  /**
+   * Returns digits to search a phone number for: either taken from the phone number,
+   * possibly across a space, or random.
+   */
+
+  private String randomDigits(String phoneNumber) {
+    StringBuilder digits = new StringBuilder();
+    int length = 1 + random.nextInt(random.nextBoolean() ? 3 : 12);
+    if (random.nextBoolean()) {
+      int start = random.nextInt(phoneNumber.length());
+      int end = Math.min(phoneNumber.length(), start + length);
+      digits.append(phoneNumber.substring(start, end).replace(" ", ""));
+      if (digits.length() == 0) {
+        digits.append('0');
+      }
+    } else {
+      for (int i = 0; i < length; i++) {
+        digits.append((char) ('0' + random.nextInt(10)));
+      }
+    }
+    return digits.toString();
+  }
+}
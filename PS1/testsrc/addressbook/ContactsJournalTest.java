@@ -0,0 +1,163 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ContactsJournalTest {
+  AddressBook addressbook;
+  Random random;
+  File snapshot;
+  File journal;
+
+  @Before
+  public void setUp() throws IOException {
+    addressbook = new AddressBook();
+    random = TestContacts.newRandom();
+    snapshot = File.createTempFile("contacts", ".snapshot");
+    journal = new File(ContactsJournal.journalPath(snapshot.getAbsolutePath()));
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    addressbook.disableJournal();
+    snapshot.delete();
+    journal.delete();
+  }
+
+  @Test
+  public void testReplay_matchesAddressBookAfterRandomChanges() throws IOException {
+    for (int i = 0; i < 100; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    addressbook.enableJournal(snapshot.getAbsolutePath());
+    for (int step = 0; step < 1000; step++) {
+      List<Contact> contacts = addressbook.getUnmodifiableContactsList();
+      int operation = random.nextInt(3);
+      if (operation == 0 || contacts.isEmpty()) {
+        addressbook.addContact(TestContacts.randomContact(random));
+      } else if (operation == 1) {
+        List<Contact> batch = new ArrayList<Contact>();
+        for (int i = 0; i < 5; i++) {
+          batch.add(TestContacts.randomContact(random));
+        }
+        batch.add(contacts.get(random.nextInt(contacts.size())));
+        addressbook.addContacts(batch);
+      } else {
+        addressbook.removeContactAtIndex(random.nextInt(contacts.size()));
+      }
+    }
+    addressbook.disableJournal();
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+  }
+
+  @Test
+  public void testReplay_ignoresTornTrailingRecord() throws IOException {
+    addressbook.addContact(TestContacts.randomContact(random));
+    addressbook.enableJournal(snapshot.getAbsolutePath());
+    addressbook.addContact(TestContacts.randomContact(random));
+    List<Contact> expected = new ArrayList<Contact>(addressbook.getUnmodifiableContactsList());
+    addressbook.addContact(TestContacts.randomContact(random));
+    addressbook.disableJournal();
+    truncateJournal(3);
+    assertEquals(expected, readSnapshot());
+  }
+
+  @Test
+  public void testReplay_ignoresTornRecordLength() throws IOException {
+    addressbook.enableJournal(snapshot.getAbsolutePath());
+    addressbook.addContact(TestContacts.randomContact(random));
+    addressbook.disableJournal();
+    List<Contact> expected = new ArrayList<Contact>(addressbook.getUnmodifiableContactsList());
+    RandomAccessFile file = new RandomAccessFile(journal, "rw");
+    try {
+      /* A change byte and half of a record length */
+      file.seek(file.length());
+      file.write(new byte[] {1, 0, 0});
+    } finally {
+      file.close();
+    }
+    assertEquals(expected, readSnapshot());
+  }
+
+  @Test
+  public void testReplay_isIdempotent() throws IOException {
+    addressbook.enableJournal(snapshot.getAbsolutePath());
+    for (int i = 0; i < 20; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    addressbook.removeContactAtIndex(0);
+    addressbook.disableJournal();
+    AddressBook replayed = new AddressBook();
+    replayed.readAddressBookFromSnapshot(snapshot.getAbsolutePath());
+    /* The snapshot already holds every change in the journal */
+    replayed.saveAddressBookToSnapshot(snapshot.getAbsolutePath());
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+  }
+
+  @Test
+  public void testCompaction_failureKeepsJournalAndRetries() throws IOException {
+    addressbook.enableJournal(snapshot.getAbsolutePath());
+    /* A non-empty directory in place of the snapshot cannot be replaced */
+    snapshot.delete();
+    File blocker = new File(snapshot, "blocker");
+    assertTrue(snapshot.mkdir() && blocker.createNewFile());
+    try {
+      addressbook.addContact(TestContacts.randomContact(random));
+      /* Each step journals two changes but leaves one contact */
+      for (int i = 0; i < AddressBook.JOURNAL_COMPACTION_THRESHOLD; i++) {
+        addressbook.addContact(TestContacts.randomContact(random));
+        addressbook.removeContactAtIndex(0);
+      }
+      assertTrue(journal.length() > ContactsJournal.HEADER_SIZE);
+    } finally {
+      blocker.delete();
+      snapshot.delete();
+    }
+    new AddressBook().saveAddressBookToSnapshot(snapshot.getAbsolutePath());
+    /* The journal alone still holds every change */
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+    addressbook.addContact(TestContacts.randomContact(random));
+    assertEquals(ContactsJournal.HEADER_SIZE, journal.length());
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+  }
+
+  @Test(expected = IOException.class)
+  public void testReplay_corruptRecord() throws IOException {
+    addressbook.enableJournal(snapshot.getAbsolutePath());
+    addressbook.addContact(TestContacts.randomContact(random));
+    addressbook.disableJournal();
+    RandomAccessFile file = new RandomAccessFile(journal, "rw");
+    try {
+      /* The change byte of the first record */
+      file.seek(ContactsJournal.HEADER_SIZE);
+      file.write(7);
+    } finally {
+      file.close();
+    }
+    readSnapshot();
+  }
+
+  private List<Contact> readSnapshot() throws IOException {
+    AddressBook read = new AddressBook();
+    read.readAddressBookFromSnapshot(snapshot.getAbsolutePath());
+    return read.getUnmodifiableContactsList();
+  }
+
+  private void truncateJournal(int bytes) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(journal, "rw");
+    try {
+      file.setLength(file.length() - bytes);
+    } finally {
+      file.close();
+    }
+  }
+}
@@ -0,0 +1,235 @@
+package addressbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ContactsSnapshotTest {
+  AddressBook addressbook;
+  Random random;
+  File temp;
+
+  @Before
+  public void setUp() throws IOException {
+    addressbook = new AddressBook();
+    random = TestContacts.newRandom();
+    for (int i = 0; i < 500; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    temp = File.createTempFile("contacts", ".snapshot");
+  }
+
+  @After
+  public void tearDown() {
+    temp.delete();
+  }
+
+  @Test
+  public void testSnapshot_roundTrip() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+  }
+
+  @Test
+  public void testSnapshot_emptyRoundTrip() throws IOException {
+    new AddressBook().saveAddressBookToSnapshot(temp.getAbsolutePath());
+    assertEquals(0, readSnapshot().size());
+  }
+
+  @Test
+  public void testSnapshot_readsVersion1() throws IOException {
+    writeOldSnapshot(ContactsSnapshot.UNINDEXED_VERSION);
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+  }
+
+  @Test
+  public void testSnapshot_readsVersion2() throws IOException {
+    writeOldSnapshot(2);
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+  }
+
+  @Test
+  public void testSnapshot_keepsPostalAddressFieldsWithSpaces() throws IOException {
+    AddressBook newYork = new AddressBook();
+    newYork.addContact(new Contact.Builder("Eric", "1", "917", "3334444")
+        .postalAddress("140", "East 64th", "New York", "New York", "10065", "USA").build());
+    newYork.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    AddressBook read = new AddressBook();
+    read.readAddressBookFromSnapshot(temp.getAbsolutePath());
+    assertEquals(newYork.getUnmodifiableContactsList(), read.getUnmodifiableContactsList());
+    assertEquals(1, read.findContactsInCity("New York").size());
+    assertEquals(1, read.findContactsInState("New York").size());
+  }
+
+  @Test
+  public void testSnapshot_readsVersion3() throws IOException {
+    writeOldSnapshot(ContactsSnapshot.SORTED_VERSION);
+    assertEquals(addressbook.getUnmodifiableContactsList(), readSnapshot());
+  }
+
+  @Test
+  public void testSnapshot_sortsOlderVersions() throws IOException {
+    writeOldSnapshot(2);
+    assertEquals(addressbook.getUnmodifiableContactsList(),
+        ContactsSnapshot.read(temp.getAbsolutePath()));
+  }
+
+  @Test
+  public void testSnapshot_rejectsNewerVersion() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    overwriteInt(4, ContactsSnapshot.VERSION + 1);
+    assertReadFails();
+  }
+
+  @Test
+  public void testSnapshot_rejectsWrongMagic() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    overwriteInt(0, 0);
+    assertReadFails();
+  }
+
+  @Test
+  public void testSnapshot_rejectsImpossibleCount() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    overwriteInt(8, Integer.MAX_VALUE);
+    assertReadFails();
+  }
+
+  @Test
+  public void testSnapshot_rejectsTruncatedFile() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    RandomAccessFile file = new RandomAccessFile(temp, "rw");
+    try {
+      /* Cut into the records, past the offset index */
+      file.setLength(file.length() - 8 * 500 - 10);
+    } finally {
+      file.close();
+    }
+    assertReadFails();
+  }
+
+  @Test
+  public void testSnapshot_rejectsNegativePhoneNumberFields() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    byte[] saved = readBytes();
+    /* The country code, area code and subscriber number of the first record */
+    for (int position: new int[] {4, 6, 8}) {
+      ByteBuffer corrupt = ByteBuffer.wrap(saved.clone());
+      corrupt.put(ContactsSnapshot.HEADER_SIZE + position, (byte) 0x80);
+      writeBytes(corrupt.array());
+      assertReadFails();
+    }
+  }
+
+  @Test
+  public void testSnapshot_rejectsCorruptRecordLengths() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    byte[] saved = readBytes();
+    for (int i = 0; i < 200; i++) {
+      byte[] corrupt = saved.clone();
+      int position = ContactsSnapshot.HEADER_SIZE + random.nextInt(200);
+      corrupt[position] = (byte) random.nextInt(256);
+      writeBytes(corrupt);
+      try {
+        readSnapshot();
+      } catch (IOException e) {
+        /* Rejecting the file is the only failure allowed */
+      }
+    }
+  }
+
+  private void assertReadFails() {
+    try {
+      readSnapshot();
+      fail("expected an IOException");
+    } catch (IOException e) {
+      /* Expected */
+    }
+  }
+
+  private List<Contact> readSnapshot() throws IOException {
+    AddressBook read = new AddressBook();
+    read.readAddressBookFromSnapshot(temp.getAbsolutePath());
+    return read.getUnmodifiableContactsList();
+  }
+
+  /**
+   * Writes the contacts as a snapshot of an older version: records without the postal
+   * address separators, and for version 1 without an offset index. Versions before the
+   * numeric phone order get the contacts in reverse order, so they must be sorted.
+   */
+
+  private void writeOldSnapshot(int version) throws IOException {
+    List<Contact> contacts = new ArrayList<Contact>(addressbook.getUnmodifiableContactsList());
+    if (version < ContactsSnapshot.SORTED_VERSION) {
+      Collections.reverse(contacts);
+    }
+    List<byte[]> records = new ArrayList<byte[]>();
+    int size = ContactsSnapshot.HEADER_SIZE;
+    for (Contact contact: contacts) {
+      byte[] record = ContactsSnapshot.encode(contact);
+      ByteBuffer withoutSeparators = ByteBuffer.allocate(record.length - 8);
+      withoutSeparators.put(record, 0, record.length - 8);
+      withoutSeparators.putInt(0, record.length - 8 - 4);
+      records.add(withoutSeparators.array());
+      size += record.length - 8;
+    }
+    if (version > ContactsSnapshot.UNINDEXED_VERSION) {
+      size += 8 * contacts.size();
+    }
+    ByteBuffer snapshot = ByteBuffer.allocate(size);
+    snapshot.putInt(ContactsSnapshot.MAGIC).putInt(version).putInt(contacts.size());
+    List<Long> offsets = new ArrayList<Long>();
+    for (byte[] record: records) {
+      offsets.add((long) snapshot.position());
+      snapshot.put(record);
+    }
+    if (version > ContactsSnapshot.UNINDEXED_VERSION) {
+      for (long offset: offsets) {
+        snapshot.putLong(offset);
+      }
+    }
+    writeBytes(snapshot.array());
+  }
+
+  private void overwriteInt(long position, int value) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(temp, "rw");
+    try {
+      file.seek(position);
+      file.writeInt(value);
+    } finally {
+      file.close();
+    }
+  }
+
+  private byte[] readBytes() throws IOException {
+    RandomAccessFile file = new RandomAccessFile(temp, "r");
+    try {
+      byte[] bytes = new byte[(int) file.length()];
+      file.readFully(bytes);
+      return bytes;
+    } finally {
+      file.close();
+    }
+  }
+
+  private void writeBytes(byte[] bytes) throws IOException {
+    FileOutputStream out = new FileOutputStream(temp);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+  }
+}
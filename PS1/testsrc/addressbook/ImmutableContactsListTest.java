@@ -0,0 +1,97 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ImmutableContactsListTest {
+  AddressBook addressbook;
+  Random random;
+
+  @Before
+  public void setUp() {
+    addressbook = new AddressBook();
+    random = TestContacts.newRandom();
+  }
+
+  @Test
+  public void testSnapshot_matchesListAfterRandomChanges() {
+    addressbook.getContactsSnapshot();
+    for (int step = 0; step < 2000; step++) {
+      applyRandomChange();
+      assertEquals(addressbook.getUnmodifiableContactsList(),
+          addressbook.getContactsSnapshot());
+    }
+  }
+
+  @Test
+  public void testSnapshot_isUnchangedByLaterChanges() {
+    for (int i = 0; i < 200; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    ImmutableContactsList snapshot = addressbook.getContactsSnapshot();
+    List<Contact> expected = new ArrayList<Contact>(addressbook.getUnmodifiableContactsList());
+    long version = addressbook.getVersion();
+    for (int step = 0; step < 500; step++) {
+      applyRandomChange();
+    }
+    assertEquals(expected, snapshot);
+    assertEquals(version, snapshot.getVersion());
+  }
+
+  @Test
+  public void testSnapshot_isSharedUntilChanged() {
+    addressbook.addContact(TestContacts.randomContact(random));
+    ImmutableContactsList snapshot = addressbook.getContactsSnapshot();
+    assertSame(snapshot, addressbook.getContactsSnapshot());
+  }
+
+  @Test
+  public void testIterator_matchesGet() {
+    for (int i = 0; i < 300; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    ImmutableContactsList snapshot = addressbook.getContactsSnapshot();
+    Iterator<Contact> iterator = snapshot.iterator();
+    for (int i = 0; i < snapshot.size(); i++) {
+      assertSame(snapshot.get(i), iterator.next());
+    }
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSnapshot_cannotBeModified() {
+    addressbook.addContact(TestContacts.randomContact(random));
+    addressbook.getContactsSnapshot().remove(0);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGet_outOfBounds() {
+    addressbook.addContact(TestContacts.randomContact(random));
+    addressbook.getContactsSnapshot().get(1);
+  }
+
+  private void applyRandomChange() {
+    List<Contact> contacts = addressbook.getUnmodifiableContactsList();
+    int operation = random.nextInt(4);
+    if (operation == 0 || contacts.isEmpty()) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    } else if (operation == 1) {
+      /* Large enough batches rebuild the snapshot rather than insert into it */
+      List<Contact> batch = new ArrayList<Contact>();
+      int batchSize = random.nextBoolean() ? 3 : 100;
+      for (int i = 0; i < batchSize; i++) {
+        batch.add(TestContacts.randomContact(random));
+      }
+      addressbook.addContacts(batch);
+    } else if (operation == 2) {
+      addressbook.removeContact(contacts.get(random.nextInt(contacts.size())));
+    } else {
+      addressbook.removeContactAtIndex(random.nextInt(contacts.size()));
+    }
+  }
+}
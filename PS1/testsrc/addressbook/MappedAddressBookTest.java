@@ -0,0 +1,96 @@
+package addressbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedAddressBookTest {
+  static final String[] SEARCHES = {"e", "ER", "eri", "\u00e9", "\u00c9L", "m\u00fc",
+      "STRASSE", "\u00df", "\u0130", "i", "\u212a", "k", "1", "12", "+1 2", "(3", "45", "0",
+      "main st", "@nyu", "note", " ", "de", "no such contact"};
+  AddressBook addressbook;
+  Random random;
+  File temp;
+
+  @Before
+  public void setUp() throws IOException {
+    addressbook = new AddressBook();
+    random = TestContacts.newRandom();
+    for (int i = 0; i < 1000; i++) {
+      addressbook.addContact(TestContacts.randomContact(random));
+    }
+    temp = File.createTempFile("contacts", ".snapshot");
+  }
+
+  @After
+  public void tearDown() {
+    temp.delete();
+  }
+
+  @Test
+  public void testOpen_matchesAddressBookOrder() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    MappedAddressBook mapped = MappedAddressBook.open(temp.getAbsolutePath());
+    assertEquals(addressbook.getUnmodifiableContactsList(),
+        mapped.getUnmodifiableContactsList());
+  }
+
+  @Test
+  public void testSearchContactsList_matchesAddressBook() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    MappedAddressBook mapped = MappedAddressBook.open(temp.getAbsolutePath());
+    for (String search: SEARCHES) {
+      assertEquals(search, addressbook.searchContactsList(search),
+          mapped.searchContactsList(search));
+    }
+  }
+
+  @Test
+  public void testSearchContactsList_nullOrEmpty() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    MappedAddressBook mapped = MappedAddressBook.open(temp.getAbsolutePath());
+    assertTrue(mapped.searchContactsList(null).isEmpty());
+    assertTrue(mapped.searchContactsList("").isEmpty());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testGetUnmodifiableContactsList_cannotBeModified() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    List<Contact> contacts = MappedAddressBook.open(temp.getAbsolutePath())
+        .getUnmodifiableContactsList();
+    contacts.remove(0);
+  }
+
+  @Test(expected = IOException.class)
+  public void testOpen_rejectsOlderSortOrder() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    RandomAccessFile file = new RandomAccessFile(temp, "rw");
+    try {
+      file.seek(4);
+      file.writeInt(ContactsSnapshot.SORTED_VERSION - 1);
+    } finally {
+      file.close();
+    }
+    MappedAddressBook.open(temp.getAbsolutePath());
+  }
+
+  @Test(expected = IOException.class)
+  public void testOpen_rejectsImpossibleCount() throws IOException {
+    addressbook.saveAddressBookToSnapshot(temp.getAbsolutePath());
+    RandomAccessFile file = new RandomAccessFile(temp, "rw");
+    try {
+      file.seek(8);
+      file.writeInt(Integer.MAX_VALUE);
+    } finally {
+      file.close();
+    }
+    MappedAddressBook.open(temp.getAbsolutePath());
+  }
+}
@@ -0,0 +1,115 @@
+package addressbook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.Before;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SecondaryIndexesTest {
+  AddressBook indexed;
+  AddressBook scanned;
+  Random random;
+
+  @Before
+  public void setUp() {
+    indexed = new AddressBook();
+    scanned = new AddressBook();
+    random = TestContacts.newRandom();
+  }
+
+  @Test
+  public void testFind_indexedMatchesScanAfterRandomChanges() {
+    for (int i = 0; i < 100; i++) {
+      addContact(TestContacts.randomContact(random));
+    }
+    indexed.enableSecondaryIndexes();
+    for (int step = 0; step < 1000; step++) {
+      List<Contact> contacts = scanned.getUnmodifiableContactsList();
+      int operation = random.nextInt(4);
+      if (operation == 0 || contacts.isEmpty()) {
+        addContact(TestContacts.randomContact(random));
+      } else if (operation == 1) {
+        List<Contact> batch = new ArrayList<Contact>();
+        for (int i = 0; i < 5; i++) {
+          batch.add(TestContacts.randomContact(random));
+        }
+        indexed.addContacts(batch);
+        scanned.addContacts(batch);
+      } else if (operation == 2) {
+        Contact contact = contacts.get(random.nextInt(contacts.size()));
+        indexed.removeContact(contact);
+        scanned.removeContact(contact);
+      } else {
+        int index = random.nextInt(contacts.size());
+        indexed.removeContactAtIndex(index);
+        scanned.removeContactAtIndex(index);
+      }
+      if (step % 50 == 0) {
+        assertSameResults();
+      }
+    }
+    assertSameResults();
+  }
+
+  @Test
+  public void testFindContactsInCity_fieldsWithSpaces() {
+    Contact newYork = new Contact.Builder("Eric", "1", "917", "3334444")
+        .postalAddress("140", "East 64th", "New York", "New York", "10065", "USA").build();
+    Contact york = new Contact.Builder("Chet", "1", "917", "3334445")
+        .postalAddress("1", "Main", "York", "PA", "17401", "USA").build();
+    addContact(newYork);
+    addContact(york);
+    indexed.enableSecondaryIndexes();
+    assertEquals(1, indexed.findContactsInCity("new york").size());
+    assertTrue(indexed.findContactsInCity("new york").contains(newYork));
+    assertEquals(1, scanned.findContactsInState("NEW YORK").size());
+    assertEquals(2, indexed.findContactsInCountry("usa").size());
+  }
+
+  @Test
+  public void testFindContactsByEmailDomain_ignoresLeadingAt() {
+    addContact(new Contact.Builder("Eric", "1", "917", "3334444")
+        .emailAddress("es3620@nyu.edu").build());
+    addContact(new Contact.Builder("Chet", "1", "917", "3334445")
+        .emailAddress("chet@cs.nyu.edu").build());
+    indexed.enableSecondaryIndexes();
+    assertEquals(1, indexed.findContactsByEmailDomain("@NYU.edu").size());
+    assertEquals(1, scanned.findContactsByEmailDomain("nyu.edu").size());
+  }
+
+  @Test
+  public void testFind_nullOrEmpty() {
+    addContact(TestContacts.randomContact(random));
+    indexed.enableSecondaryIndexes();
+    assertTrue(indexed.findContactsInCity(null).isEmpty());
+    assertTrue(indexed.findContactsByEmailPrefix("").isEmpty());
+  }
+
+  private void assertSameResults() {
+    for (String city: TestContacts.CITIES) {
+      assertEquals(scanned.findContactsInCity(city), indexed.findContactsInCity(city));
+    }
+    for (String state: TestContacts.STATES) {
+      assertEquals(scanned.findContactsInState(state), indexed.findContactsInState(state));
+    }
+    for (String country: TestContacts.COUNTRIES) {
+      assertEquals(scanned.findContactsInCountry(country),
+          indexed.findContactsInCountry(country));
+    }
+    for (String domain: TestContacts.DOMAINS) {
+      assertEquals(scanned.findContactsByEmailDomain(domain),
+          indexed.findContactsByEmailDomain(domain));
+    }
+    for (String prefix: new String[] {"a", "ab", "B", "abc@"}) {
+      assertEquals(scanned.findContactsByEmailPrefix(prefix),
+          indexed.findContactsByEmailPrefix(prefix));
+    }
+  }
+
+  private void addContact(Contact contact) {
+    assertEquals(indexed.addContact(contact), scanned.addContact(contact));
+  }
+}
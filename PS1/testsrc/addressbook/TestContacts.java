@@ -0,0 +1,111 @@
+package addressbook;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random contacts shared by the tests. Every test draws from a {@code Random} with the
+ * same fixed seed, so a failure can be reproduced.
+ */
+
+final class TestContacts {
+  static final long SEED = 2015;
+  static final String[] WORDS = {"Eric", "ANNA", "bob", "Abby", "\u00c9lise", "M\u00fcller",
+      "stra\u00dfe", "\u0130stanbul", "KELVIN", "Main", "st", "nyu", "x"};
+  static final String[] CITIES = {"New York", "Paris", "paris", "Los Angeles", ""};
+  static final String[] STATES = {"NY", "Texas", "New Mexico", ""};
+  static final String[] COUNTRIES = {"USA", "France", "United Kingdom"};
+  static final String[] DOMAINS = {"nyu.edu", "cs.nyu.edu", "gmail.com", "NYU.edu"};
+  private static final int PHONE_NUMBERS = 1000000;
+
+  private TestContacts() {
+  }
+
+  /**
+   * Returns a new {@code Random} seeded with {@code SEED}.
+   */
+
+  static Random newRandom() {
+    return new Random(SEED);
+  }
+
+  /**
+   * Returns a random contact. Names, email addresses, postal addresses and notes are made
+   * of the shared words, so searches and the secondary indexes find matches.
+   */
+
+  static Contact randomContact(Random random) {
+    return randomContact(random, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns a random contact whose fields each take one of at most variety values,
+   * ignoring case, so that tests can make equal contacts likely. The case of the words
+   * is random, so equal contacts may differ in case.
+   */
+
+  static Contact randomContact(Random random, int variety) {
+    String first = pick(random, WORDS, variety);
+    String last = pick(random, WORDS, variety);
+    int number = random.nextInt(Math.min(variety, PHONE_NUMBERS));
+    return new Contact.Builder(changeCase(random, first) + " " + changeCase(random, last),
+        "" + (1 + number % 3), "" + number % 1000, "" + number * 7919L % 10000000)
+        .emailAddress(changeCase(random, last) + "@" + pick(random, DOMAINS, variety))
+        .postalAddress("" + random.nextInt(Math.min(variety, 300)), "Main Street",
+            pick(random, CITIES, variety), pick(random, STATES, variety), "10001",
+            pick(random, COUNTRIES, variety))
+        .note(random.nextBoolean() ? last : "").build();
+  }
+
+  /**
+   * Returns the contacts a JSON save of the provided contacts reads back as, in sorted
+   * order. The JSON format does not keep every field exactly: a postal address is stored
+   * without its zipcode, so it does not read back as six fields and is dropped.
+   */
+
+  static List<Contact> readBack(List<Contact> contacts) {
+    List<Contact> rebuilt = new ArrayList<Contact>();
+    for (Contact contact: contacts) {
+      rebuilt.add(AddressBook.buildContact(contact.getName(), contact.getPhoneNumber(),
+          contact.getEmail(), contact.getPostalAddress(), contact.getNote()));
+    }
+    AddressBook addressbook = new AddressBook();
+    addressbook.addContacts(rebuilt);
+    return addressbook.getUnmodifiableContactsList();
+  }
+
+  /**
+   * Returns the contacts whose fields the default charset can encode, which are those
+   * that {@code saveAddressBookToFile} can save.
+   */
+
+  static List<Contact> inDefaultCharset(List<Contact> contacts) {
+    CharsetEncoder encoder = Charset.defaultCharset().newEncoder();
+    List<Contact> encodable = new ArrayList<Contact>();
+    for (Contact contact: contacts) {
+      if (encoder.canEncode(contact.getName() + contact.getEmail()
+          + contact.getPostalAddress() + contact.getNote())) {
+        encodable.add(contact);
+      }
+    }
+    return encodable;
+  }
+
+  private static String pick(Random random, String[] strings, int variety) {
+    return strings[random.nextInt(Math.min(variety, strings.length))];
+  }
+
+  private static String changeCase(Random random, String word) {
+    int choice = random.nextInt(3);
+    if (choice == 0) {
+      return word.toLowerCase();
+    } else if (choice == 1) {
+      return word.toUpperCase();
+    } else {
+      return word;
+    }
+  }
+}